@@ -0,0 +1,221 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * Headless runner, emulating many ROMs in parallel for a given number of
+ * cycles or frames, on a work-stealing pool with one gameboy per task. Only
+ * the last frame of each run is rendered. Reports, for each ROM and in
+ * aggregate, the cycles emulated per second, and the hash of the last frame
+ * of each ROM, to compare runs with each other
+ *
+ * Usage : BatchRunner [-cycles n | -frames n] [-threads n] [rom|dir]... ;
+ * directories are expanded to the .gb files they contain, and roms/ is used
+ * when no ROM is given
+ */
+public final class BatchRunner {
+
+    private static final long DEFAULT_FRAMES = 60 * 60;
+    private static final File DEFAULT_ROMS = new File("roms");
+
+    private BatchRunner() {}
+
+    /**
+     * Result of the run of a ROM
+     */
+    static final class Result {
+        final File rom;
+        final long cycles, nanos;
+        final LcdImage lastFrame;
+        final Throwable error;
+
+        private Result(File rom, long cycles, long nanos, LcdImage lastFrame,
+                Throwable error) {
+            this.rom = rom;
+            this.cycles = cycles;
+            this.nanos = nanos;
+            this.lastFrame = lastFrame;
+            this.error = error;
+        }
+
+        /**
+         * Computes the speed of the emulation
+         *
+         * @return cycles emulated per second
+         */
+        double cyclesPerSecond() {
+            return cycles / (nanos * 1e-9);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long cycles = DEFAULT_FRAMES * LcdController.FRAME_CYCLES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<File> roms = new ArrayList<>();
+        boolean romsGiven = false;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                case "-cycles":
+                    cycles = Long.parseLong(args[++i]);
+                    break;
+                case "-frames":
+                    cycles = Long.parseLong(args[++i])
+                            * LcdController.FRAME_CYCLES;
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    roms.addAll(romsOf(new File(args[i])));
+                    romsGiven = true;
+                }
+            }
+            if (!romsGiven)
+                roms.addAll(romsOf(DEFAULT_ROMS));
+            Preconditions.checkArgument(
+                    cycles > 0 && threads > 0 && !roms.isEmpty());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println("Usage : BatchRunner [-cycles n | -frames n] "
+                    + "[-threads n] [rom|dir]...");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = runAll(roms, cycles, threads);
+        long nanos = System.nanoTime() - start;
+
+        long totalCycles = 0;
+        boolean failed = false;
+        for (Result r : results) {
+            if (r.error != null) {
+                failed = true;
+                System.out.printf("%-40s failed : %s%n", r.rom.getName(),
+                        r.error);
+            } else {
+                totalCycles += r.cycles;
+                System.out.printf("%-40s %12d cycles %8.2f Mcycles/s"
+                        + " %7.1fx  frame %08x%n", r.rom.getName(), r.cycles,
+                        r.cyclesPerSecond() / 1e6,
+                        r.cyclesPerSecond() / GameBoy.CYCLES_PER_SEC,
+                        r.lastFrame.hashCode());
+            }
+        }
+        double aggregate = totalCycles / (nanos * 1e-9);
+        System.out.printf("%d roms on %d threads : %d cycles in %.2f s,"
+                + " %.2f Mcycles/s %.1fx%n", results.size(), threads,
+                totalCycles, nanos * 1e-9, aggregate / 1e6,
+                aggregate / GameBoy.CYCLES_PER_SEC);
+
+        if (failed)
+            System.exit(1);
+    }
+
+    /**
+     * Runs given ROMs in parallel, each for given number of cycles
+     *
+     * @param roms
+     *            ROM files to run
+     * @param cycles
+     *            number of cycles to run each ROM for
+     * @param threads
+     *            parallelism of the pool
+     * @return results of the runs, in the order of the ROMs
+     * @throws InterruptedException
+     *             if interrupted while waiting for the runs
+     * @throws IllegalArgumentException
+     *             if cycles or threads isn't strictly positive
+     */
+    static List<Result> runAll(List<File> roms, long cycles, int threads)
+            throws InterruptedException {
+        Preconditions.checkArgument(cycles > 0 && threads > 0);
+
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (File rom : roms)
+            tasks.add(() -> run(rom, cycles));
+
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        try {
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> f : pool.invokeAll(tasks))
+                results.add(f.get());
+            return results;
+        } catch (ExecutionException e) {
+            // run catches the failures of the emulation
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs a ROM for given number of cycles, rendering only the last frame
+     *
+     * @param rom
+     *            ROM file
+     * @param cycles
+     *            number of cycles to run
+     * @return result of the run, holding the failure, exception or error,
+     *         if there was one
+     */
+    private static Result run(File rom, long cycles) {
+        try {
+            GameBoy gb = new GameBoy(Cartridge.ofFile(rom));
+            LcdController lcd = gb.lcdController();
+            lcd.setFrameSkip(Integer.MAX_VALUE);
+
+            long start = System.nanoTime();
+            // The last frame starting at least one frame before the end is
+            // completed
+            gb.runUntil(Math.max(0, cycles - 2 * LcdController.FRAME_CYCLES));
+            lcd.requestFrame();
+            gb.runUntil(cycles);
+            long nanos = System.nanoTime() - start;
+
+            return new Result(rom, cycles, nanos, lcd.currentImage(), null);
+        } catch (Exception | Error e) {
+            // errors too, as the cpu throws one on unimplemented instructions
+            return new Result(rom, 0, 0, null, e);
+        }
+    }
+
+    /**
+     * Lists the ROMs of given file : the file itself, or the .gb files of a
+     * directory, sorted by name
+     *
+     * @param file
+     *            ROM or directory
+     * @return ROM files
+     * @throws IllegalArgumentException
+     *             if the file doesn't exist, or is a directory which can't be
+     *             listed
+     */
+    private static List<File> romsOf(File file) {
+        Preconditions.checkArgument(file.exists());
+        if (!file.isDirectory())
+            return List.of(file);
+
+        File[] roms = file.listFiles((d, name) -> name.endsWith(".gb"));
+        Preconditions.checkArgument(roms != null);
+        Arrays.sort(roms);
+        return Arrays.asList(roms);
+    }
+}
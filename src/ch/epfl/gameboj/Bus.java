@@ -5,8 +5,7 @@
 
 package ch.epfl.gameboj;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
 
 import ch.epfl.gameboj.component.Component;
@@ -14,17 +13,124 @@ import ch.epfl.gameboj.component.Component;
 public final class Bus {
  
     private static final int DEFAULT_READ_VALUE = 0xFF;
-    
-    private final List<Component> attachedComponents = new ArrayList<>();
-    
+
+    private static final int PAGE_BITS = 8, PAGE_COUNT = 1 << PAGE_BITS,
+            PAGE_MASK = PAGE_COUNT - 1, HIGH_PAGE = PAGE_COUNT - 1,
+            ADDRESS_SPACE_END = PAGE_COUNT << PAGE_BITS;
+
+    private static final Component[] NO_COMPONENTS = new Component[0];
+
+    /*
+     * Components having data in each 256-byte page, in attach order. The
+     * high page (0xFF00-0xFFFF) is shared by the registers of almost every
+     * component, so it is resolved address by address instead
+     */
+    private final Component[][] pages = new Component[PAGE_COUNT][];
+    private final Component[][] highPage = new Component[PAGE_COUNT][];
+
+    /*
+     * Arrays backing the pages to which a single memory component is
+     * attached, accessed directly, and index of the first byte of each of
+     * those pages in its array
+     */
+    private final byte[][] memoryPages = new byte[PAGE_COUNT][];
+    private final int[] memoryOffsets = new int[PAGE_COUNT];
+
     /**
-     * Connects given component to list of components attached to bus
+     * Constructs a bus with no attached component
+     */
+    public Bus() {
+        Arrays.fill(pages, NO_COMPONENTS);
+        Arrays.fill(highPage, NO_COMPONENTS);
+    }
+
+    /**
+     * Connects given component to the whole address space of the bus : it
+     * will be asked for every read (until a component answers) and notified
+     * of every write
      * 
      * @param component
      *            component to connect to bus
      */
     public void attach(Component component) {
-        attachedComponents.add(Objects.requireNonNull(component));
+        Objects.requireNonNull(component);
+
+        for (int p = 0; p < PAGE_COUNT; ++p) {
+            pages[p] = appended(pages[p], component);
+            highPage[p] = appended(highPage[p], component);
+        }
+        Arrays.fill(memoryPages, null);
+    }
+
+    /**
+     * Connects given component to the bus, for addresses between startAddress
+     * (inclusive) and endAddress (exclusive) only. The component must return
+     * NO_DATA and ignore writes outside of the ranges it is attached to
+     * 
+     * @param component
+     *            component to connect to bus
+     * @param startAddress
+     *            first address of range (inclusive)
+     * @param endAddress
+     *            last address of range (exclusive), at most 0x10000
+     * @throws IllegalArgumentException
+     *             if startAddress isn't a 16-bit value, or endAddress is
+     *             smaller than startAddress or greater than 0x10000
+     */
+    public void attach(Component component, int startAddress, int endAddress) {
+        Objects.requireNonNull(component);
+        Preconditions.checkBits16(startAddress);
+        Preconditions.checkArgument(startAddress <= endAddress
+                && endAddress <= ADDRESS_SPACE_END);
+
+        for (int a = startAddress; a < endAddress; ++a) {
+            int page = a >>> PAGE_BITS;
+            if (page == HIGH_PAGE) {
+                highPage[a & PAGE_MASK] = appendedOnce(
+                        highPage[a & PAGE_MASK], component);
+            } else {
+                pages[page] = appendedOnce(pages[page], component);
+                memoryPages[page] = null;
+                a |= PAGE_MASK; // whole page done
+            }
+        }
+    }
+
+    /**
+     * Connects given memory component to the bus, as
+     * {@link #attach(Component, int, int)}, knowing that it stores the byte
+     * at address a at index a - startAddress of given array. On every page
+     * (256 addresses) lying entirely in the range, outside of the high page,
+     * and to which no other component is attached, reads and writes then
+     * access the array directly instead of going through the component
+     * 
+     * @param component
+     *            memory component to connect to bus
+     * @param memory
+     *            array in which component stores its data, not copied
+     * @param startAddress
+     *            first address of range (inclusive)
+     * @param endAddress
+     *            last address of range (exclusive), at most 0x10000
+     * @throws IllegalArgumentException
+     *             if startAddress isn't a 16-bit value, or endAddress is
+     *             smaller than startAddress or greater than 0x10000, or the
+     *             range is bigger than given array
+     */
+    public void attachMemory(Component component, byte[] memory,
+            int startAddress, int endAddress) {
+        Objects.requireNonNull(memory);
+        Preconditions.checkArgument(endAddress - startAddress <= memory.length);
+        attach(component, startAddress, endAddress);
+
+        int firstPage = (startAddress + PAGE_MASK) >>> PAGE_BITS;
+        int endPage = Math.min(endAddress >>> PAGE_BITS, HIGH_PAGE);
+        for (int p = firstPage; p < endPage; ++p) {
+            if (pages[p].length == 1) {
+                memoryPages[p] = memory;
+                memoryOffsets[p] = (p << PAGE_BITS) - startAddress;
+            }
+        }
     }
 
     /**
@@ -40,7 +146,13 @@ public final class Bus {
     public int read(int address) {
         Preconditions.checkBits16(address);
 
-        for (Component c : attachedComponents) {
+        int page = address >>> PAGE_BITS;
+        byte[] memory = memoryPages[page];
+        if (memory != null)
+            return Byte.toUnsignedInt(
+                    memory[memoryOffsets[page] + (address & PAGE_MASK)]);
+
+        for (Component c : componentsAt(address)) {
             int value = c.read(address);
             if (value != Component.NO_DATA)
                 return value;
@@ -48,6 +160,49 @@ public final class Bus {
         return DEFAULT_READ_VALUE;
     }
 
+    /**
+     * Reads consecutive bytes, as {@link #read(int)} would one by one : the
+     * components of each page are resolved once, and pages backed by a
+     * memory array are copied in bulk
+     *
+     * @param address
+     *            address of the first byte to read
+     * @param data
+     *            array receiving the bytes read
+     * @param offset
+     *            index in data of the first byte read
+     * @param length
+     *            number of bytes to read
+     * @throws IllegalArgumentException
+     *             if address isn't a 16 bit value, or the bytes don't all lie
+     *             in the address space
+     * @throws IndexOutOfBoundsException
+     *             if the bytes read don't fit in given array from given offset
+     */
+    public void readBlock(int address, byte[] data, int offset, int length) {
+        Preconditions.checkBits16(address);
+        Preconditions.checkArgument(
+                length >= 0 && address + length <= ADDRESS_SPACE_END);
+        Objects.checkFromIndexSize(offset, length, data.length);
+
+        int end = address + length;
+        while (address < end) {
+            int page = address >>> PAGE_BITS;
+            int pageEnd = Math.min((page + 1) << PAGE_BITS, end);
+            byte[] memory = memoryPages[page];
+            if (memory != null) {
+                System.arraycopy(memory,
+                        memoryOffsets[page] + (address & PAGE_MASK), data,
+                        offset, pageEnd - address);
+                offset += pageEnd - address;
+                address = pageEnd;
+            } else {
+                for (; address < pageEnd; ++address)
+                    data[offset++] = (byte) read(address);
+            }
+        }
+    }
+
     /**
      * Writes given data at given address for all attached components
      * 
@@ -61,8 +216,45 @@ public final class Bus {
     public void write(int address, int data) {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
-        for (Component c : attachedComponents) {
+
+        int page = address >>> PAGE_BITS;
+        byte[] memory = memoryPages[page];
+        if (memory != null) {
+            memory[memoryOffsets[page] + (address & PAGE_MASK)] = (byte) data;
+            return;
+        }
+
+        for (Component c : componentsAt(address)) {
             c.write(address, data);
         }
     }
+
+    /**
+     * Gets the components attached at given address, in attach order
+     * 
+     * @param address
+     *            16-bit address
+     * @return components attached at given address
+     */
+    private Component[] componentsAt(int address) {
+        int page = address >>> PAGE_BITS;
+        return page == HIGH_PAGE ? highPage[address & PAGE_MASK] : pages[page];
+    }
+
+    /**
+     * Returns a copy of given array with given component appended
+     */
+    private static Component[] appended(Component[] cs, Component c) {
+        Component[] res = Arrays.copyOf(cs, cs.length + 1);
+        res[cs.length] = c;
+        return res;
+    }
+
+    /**
+     * Returns given array with given component appended, unless it is already
+     * the last component of the array
+     */
+    private static Component[] appendedOnce(Component[] cs, Component c) {
+        return cs.length > 0 && cs[cs.length - 1] == c ? cs : appended(cs, c);
+    }
 }
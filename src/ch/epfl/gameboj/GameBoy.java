@@ -5,9 +5,11 @@
 
 package ch.epfl.gameboj;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.Timer;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.component.cpu.Cpu;
@@ -20,14 +22,23 @@ public final class GameBoy {
 
     public static final long CYCLES_PER_SEC = 1 << 20;
     public static final double CYCLES_PER_NANOSEC = CYCLES_PER_SEC * 1e-9;
+
+    // Save states start with "GBJS" and the version of their layout, which
+    // has to change whenever the state of a component does
+    private static final int STATE_MAGIC = 0x47424A53, STATE_VERSION = 4;
+    private static final int STATE_HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
     
     private final Bus bus;
+    private final Scheduler scheduler;
     private final Cpu cpu;
     private final Timer timer;
     private final LcdController lcdController;
     private final Joypad joypad;
     private final Cartridge cartridge;
 
+    // Parts making up the state of the gameboy, in the order they are saved
+    private final Stateful[] statefulParts;
+
     private long cycleCount;
 
     /**
@@ -38,9 +49,21 @@ public final class GameBoy {
      *             if given cartridge is null
      */
     public GameBoy(Cartridge cartridge) {
+        this(cartridge, Cpu.Engine.ROM_CACHE);
+    }
+
+    /**
+     * GameBoy constructor, with a cpu executing opcodes with given engine
+     * 
+     * @param cartridge the cartridge of the game
+     * @param engine the engine used by the cpu to execute opcodes
+     * @throws NullPointException
+     *             if given cartridge or engine is null
+     */
+    public GameBoy(Cartridge cartridge, Cpu.Engine engine) {
         bus = new Bus();
         
-        cpu = new Cpu();
+        cpu = new Cpu(engine);
         cpu.attachTo(bus);
         
         timer = new Timer(cpu);
@@ -69,6 +92,14 @@ public final class GameBoy {
         joypad = new Joypad(cpu);
         joypad.attachTo(bus);
         
+        // Registration order is the order in which components are clocked
+        scheduler = new Scheduler();
+        scheduler.register(timer);
+        scheduler.register(lcdController);
+        scheduler.register(cpu);
+
+        statefulParts = new Stateful[] { cpu, timer, lcdController, joypad,
+                ram, romController, cartridge };
     }
 
 
@@ -83,14 +114,58 @@ public final class GameBoy {
     public void runUntil(long cycle) {
         Preconditions.checkArgument(cycleCount <= cycle);
 
-        while (cycleCount < cycle) {
-            timer.cycle(cycleCount);
-            lcdController.cycle(cycleCount);
-            cpu.cycle(cycleCount);
-            ++cycleCount;
-        }
+        cycleCount = scheduler.runUntil(cycleCount, cycle);
     }
     
+    /**
+     * Gives the size of the save states of this gameboy, which only depends on
+     * the size of the ram of its cartridge
+     * 
+     * @return size of a save state, in bytes
+     */
+    public int stateSize() {
+        int size = STATE_HEADER_SIZE;
+        for (Stateful p : statefulParts)
+            size += p.stateSize();
+        return size;
+    }
+
+    /**
+     * Saves the state of the whole gameboy : registers and memories of all
+     * its components, banks selected in its cartridge, and number of cycles
+     * run. Loading it in this gameboy, or in one with an identical cartridge,
+     * makes it run from there exactly as this one would
+     * 
+     * @return save state of the gameboy
+     */
+    public byte[] saveState() {
+        ByteBuffer state = ByteBuffer.allocate(stateSize());
+        state.putInt(STATE_MAGIC).putInt(STATE_VERSION).putLong(cycleCount);
+        for (Stateful p : statefulParts)
+            p.saveState(state);
+        return state.array();
+    }
+
+    /**
+     * Restores a state saved by {@link #saveState()}
+     * 
+     * @param state
+     *            save state to restore
+     * @throws IllegalArgumentException
+     *             if given state isn't a save state of the current version,
+     *             for a gameboy with a cartridge ram of the same size
+     */
+    public void loadState(byte[] state) {
+        Preconditions.checkArgument(state.length == stateSize());
+        ByteBuffer b = ByteBuffer.wrap(state);
+        Preconditions.checkArgument(
+                b.getInt() == STATE_MAGIC && b.getInt() == STATE_VERSION);
+
+        cycleCount = b.getLong();
+        for (Stateful p : statefulParts)
+            p.loadState(b);
+    }
+
     /**
      * Getter for bus
      * 
@@ -0,0 +1,268 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * History of the states of a gameboy, to run it backwards. States are kept
+ * in a ring buffer, the oldest ones being dropped when it is full. Every
+ * state is stored as its difference (xor) with the last keyframe, a full
+ * state captured every few states ; the difference, mostly zeros, is
+ * compressed by encoding runs of zeros as their length. The frame displayed
+ * when a state was captured is appended to it, and compressed the same way,
+ * as restoring a state doesn't change the image of the lcd controller
+ */
+public final class RewindBuffer {
+
+    private static final int VARINT_BITS = 7, VARINT_MORE = 1 << VARINT_BITS,
+            MAX_VARINT_BYTES = 5;
+
+    private final GameBoy gameboy;
+    private final int keyframeInterval;
+
+    // ring buffer of captured states, followed by their frame : the keyframe
+    // each one is relative to, and its encoded difference with it
+    private final byte[][] keyframes, deltas;
+    private int newest = -1, size = 0;
+
+    private byte[] keyframe = null;
+    private int sinceKeyframe = 0;
+    private byte[] encoded = new byte[0], restored = new byte[0];
+    private LcdImage image = null;
+
+    /**
+     * Constructs an empty rewind buffer for given gameboy
+     *
+     * @param gameboy
+     *            gameboy whose states are captured
+     * @param capacity
+     *            maximum number of states kept
+     * @param keyframeInterval
+     *            number of states captured between two keyframes
+     * @throws NullPointerException
+     *             if given gameboy is null
+     * @throws IllegalArgumentException
+     *             if capacity or keyframeInterval isn't strictly positive
+     */
+    public RewindBuffer(GameBoy gameboy, int capacity, int keyframeInterval) {
+        Preconditions.checkArgument(capacity > 0 && keyframeInterval > 0);
+
+        this.gameboy = Objects.requireNonNull(gameboy);
+        this.keyframeInterval = keyframeInterval;
+        keyframes = new byte[capacity][];
+        deltas = new byte[capacity][];
+    }
+
+    /**
+     * Getter for the number of states that can be rewound
+     *
+     * @return number of states in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Computes the memory used by the states and frames in the buffer,
+     * counting each keyframe once
+     *
+     * @return number of bytes used by the states and frames
+     */
+    public long byteSize() {
+        long bytes = 0;
+        byte[] lastKeyframe = null;
+        for (int i = 0; i < size; ++i) {
+            int index = Math.floorMod(newest - i, deltas.length);
+            bytes += deltas[index].length;
+            if (keyframes[index] != lastKeyframe) {
+                lastKeyframe = keyframes[index];
+                bytes += lastKeyframe.length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Getter for the frame displayed when the last restored state was
+     * captured
+     *
+     * @return frame of the last restored state, or null if none was restored
+     */
+    public LcdImage image() {
+        return image;
+    }
+
+    /**
+     * Captures the current state of the gameboy, dropping the oldest state if
+     * the buffer is full
+     */
+    public void capture() {
+        byte[] gameboyState = gameboy.saveState();
+        LcdImage frame = gameboy.lcdController().currentImage();
+        byte[] state = Arrays.copyOf(gameboyState,
+                gameboyState.length + frame.pixelsSize());
+        frame.writePixels(ByteBuffer.wrap(state, gameboyState.length,
+                frame.pixelsSize()));
+
+        if (keyframe == null || sinceKeyframe == keyframeInterval) {
+            keyframe = state;
+            sinceKeyframe = 0;
+        }
+        ++sinceKeyframe;
+
+        newest = (newest + 1) % deltas.length;
+        keyframes[newest] = keyframe;
+        deltas[newest] = encode(state, keyframe);
+        size = Math.min(size + 1, deltas.length);
+    }
+
+    /**
+     * Restores the most recently captured state, and removes it from the
+     * buffer
+     *
+     * @return false if the buffer was empty, and nothing was restored
+     */
+    public boolean rewind() {
+        if (size == 0)
+            return false;
+
+        byte[] base = keyframes[newest];
+        if (restored.length != base.length)
+            restored = new byte[base.length];
+        decode(deltas[newest], base, restored);
+        int stateSize = gameboy.stateSize();
+        gameboy.loadState(Arrays.copyOf(restored, stateSize));
+        image = LcdImage.ofPixels(LcdController.LCD_WIDTH,
+                LcdController.LCD_HEIGHT, ByteBuffer.wrap(restored, stateSize,
+                        restored.length - stateSize));
+
+        keyframes[newest] = null;
+        deltas[newest] = null;
+        newest = Math.floorMod(newest - 1, deltas.length);
+        --size;
+
+        // Next captures are relative to the keyframe of the states left,
+        // rather than to one that may have been captured after them, until
+        // the states relative to it fill the keyframe interval again
+        keyframe = size == 0 ? null : keyframes[newest];
+        sinceKeyframe = 0;
+        while (sinceKeyframe < size && keyframes[Math.floorMod(
+                newest - sinceKeyframe, deltas.length)] == keyframe)
+            ++sinceKeyframe;
+        return true;
+    }
+
+    /**
+     * Encodes the xor of given state and keyframe, as a sequence of runs of
+     * zeros followed by literal bytes, each run being given by its number of
+     * zeros and literals, as variable length integers
+     *
+     * @param state
+     *            state to encode
+     * @param keyframe
+     *            keyframe it is relative to, of the same size
+     * @return encoded difference between state and keyframe
+     */
+    private byte[] encode(byte[] state, byte[] keyframe) {
+        // Worst case : equal and different bytes alternate, each different
+        // byte costing two run lengths and itself
+        int maxSize = state.length + (state.length + 1) / 2
+                + 2 * MAX_VARINT_BYTES;
+        if (encoded.length < maxSize)
+            encoded = new byte[maxSize];
+
+        int out = 0, i = 0;
+        while (i < state.length) {
+            int zerosStart = i;
+            while (i < state.length && state[i] == keyframe[i])
+                ++i;
+            int literalsStart = i;
+            while (i < state.length && state[i] != keyframe[i])
+                ++i;
+
+            out = putVarint(encoded, out, literalsStart - zerosStart);
+            out = putVarint(encoded, out, i - literalsStart);
+            for (int j = literalsStart; j < i; ++j)
+                encoded[out++] = (byte) (state[j] ^ keyframe[j]);
+        }
+        return Arrays.copyOf(encoded, out);
+    }
+
+    /**
+     * Decodes a difference produced by encode, applying it to given keyframe
+     *
+     * @param delta
+     *            encoded difference
+     * @param keyframe
+     *            keyframe the difference is relative to
+     * @param state
+     *            array receiving the decoded state, of the size of the
+     *            keyframe
+     */
+    private static void decode(byte[] delta, byte[] keyframe, byte[] state) {
+        System.arraycopy(keyframe, 0, state, 0, keyframe.length);
+
+        int in = 0, i = 0;
+        int[] value = new int[1];
+        while (in < delta.length) {
+            in = getVarint(delta, in, value);
+            i += value[0];
+            in = getVarint(delta, in, value);
+            for (int end = i + value[0]; i < end; ++i)
+                state[i] ^= delta[in++];
+        }
+    }
+
+    /**
+     * Writes given non-negative value as a variable length integer, 7 bits
+     * per byte from the lsb, the msb of each byte telling whether another one
+     * follows
+     *
+     * @param data
+     *            array to write in
+     * @param index
+     *            index of the first byte to write
+     * @param value
+     *            value to write
+     * @return index following the last byte written
+     */
+    private static int putVarint(byte[] data, int index, int value) {
+        while (value >= VARINT_MORE) {
+            data[index++] = (byte) (value | VARINT_MORE);
+            value >>>= VARINT_BITS;
+        }
+        data[index++] = (byte) value;
+        return index;
+    }
+
+    /**
+     * Reads a variable length integer written by putVarint
+     *
+     * @param data
+     *            array to read from
+     * @param index
+     *            index of the first byte to read
+     * @param value
+     *            array whose first element receives the value read
+     * @return index following the last byte read
+     */
+    private static int getVarint(byte[] data, int index, int[] value) {
+        int v = 0, shift = 0, b;
+        do {
+            b = data[index++];
+            v |= (b & (VARINT_MORE - 1)) << shift;
+            shift += VARINT_BITS;
+        } while ((b & VARINT_MORE) != 0);
+        value[0] = v;
+        return index;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.Clocked;
+
+public final class Scheduler {
+
+    private Clocked[] components = new Clocked[0];
+
+    /**
+     * Registers given component, which will be clocked after all previously
+     * registered ones at each cycle where something happens
+     * 
+     * @param component
+     *            component to clock
+     * @throws NullPointerException
+     *             if given component is null
+     */
+    public void register(Clocked component) {
+        Objects.requireNonNull(component);
+
+        components = Arrays.copyOf(components, components.length + 1);
+        components[components.length - 1] = component;
+    }
+
+    /**
+     * Computes the first cycle, not before given one, at which any of the
+     * registered components has something to do
+     * 
+     * @param cycle
+     *            the current cycle index
+     * @return index of next cycle where something happens, or Long.MAX_VALUE
+     *         if all components are idle
+     */
+    public long nextEventCycle(long cycle) {
+        long next = Long.MAX_VALUE;
+        for (Clocked c : components) {
+            next = Math.min(next, Math.max(cycle, c.nextEventCycle(cycle)));
+            if (next == cycle)
+                break; // nothing can happen earlier
+        }
+        return next;
+    }
+
+    /**
+     * Same as nextEventCycle(long), but stops at given cycle, and lets the
+     * component having the earliest event skip idle work, when no other
+     * component has an event at the same cycle
+     * 
+     * @param cycle
+     *            the current cycle index
+     * @param until
+     *            cycle at which the run stops
+     * @return index of next cycle where something happens, or until if
+     *         nothing happens before
+     */
+    private long nextEventCycle(long cycle, long until) {
+        long next = until, afterNext = until;
+        Clocked first = null;
+        for (Clocked c : components) {
+            long event = Math.max(cycle, c.nextEventCycle(cycle));
+            if (event < next) {
+                afterNext = next;
+                next = event;
+                first = c;
+            } else if (event < afterNext) {
+                afterNext = event;
+            }
+        }
+
+        if (first != null && next < afterNext)
+            next = Math.max(cycle, first.skipIdleCycles(next, afterNext));
+        return Math.min(next, afterNext);
+    }
+
+    /**
+     * Runs registered components from given cycle up to given cycle - 1,
+     * skipping the cycles during which all of them are idle. Deadlines are
+     * queried again after each event, since a component (typically the cpu)
+     * can change the deadlines of the others. The component with the earliest
+     * deadline may also skip idle work up to the next deadline of the others.
+     * The last cycle of the run is always clocked, so that components which
+     * catch up lazily are up-to-date when observed between two runs
+     * 
+     * @param from
+     *            first cycle to run
+     * @param until
+     *            cycle at which to stop (exclusive)
+     * @return until, the index of the next cycle to run
+     * @throws IllegalArgumentException
+     *             if until is smaller than from
+     */
+    public long runUntil(long from, long until) {
+        Preconditions.checkArgument(from <= until);
+
+        long last = until - 1, clocked = from - 1;
+        for (long c = nextEventCycle(from, until); c < until;
+                c = nextEventCycle(c + 1, until)) {
+            clock(c);
+            clocked = c;
+        }
+
+        // Nothing happens during the last cycle if it wasn't clocked yet
+        if (clocked < last)
+            clock(last);
+        return until;
+    }
+
+    /**
+     * Clocks all registered components at given cycle, in registration order
+     * 
+     * @param cycle
+     *            the cycle index
+     */
+    private void clock(long cycle) {
+        for (Clocked c : components)
+            c.cycle(cycle);
+    }
+}
@@ -7,13 +7,17 @@ import ch.epfl.gameboj.Preconditions;
 
 public final class BitVector {
 
-    private static final int ALL_ONES = 0xFFFFFFFF;
+    private static final long ALL_ONES = -1L;
     
     private enum ExtractType {
         ZERO_EXT, WRAPPED
     };
 
-    private final int[] elements;
+    // Bits are stored 64 at a time, which halves the work of bitwise
+    // operations compared to ints. Sizes being multiples of 32 only, the last
+    // long may have its 32 msb unused : they are always 0
+    private final long[] elements;
+    private final int size;
 
     /**
      * Constructs a BitVector of given size (in bits), all bits set to given
@@ -28,7 +32,7 @@ public final class BitVector {
      *             Integer.SIZE (32)
      */
     public BitVector(int size, boolean defaultValue) {
-        this(initializeArray(size, defaultValue));
+        this(initializeArray(size, defaultValue), size);
     }
 
     /**
@@ -44,7 +48,7 @@ public final class BitVector {
      *             Integer.SIZE (32)
      */
     public BitVector(int size) {
-        this(initializeArray(size, false));
+        this(initializeArray(size, false), size);
     }
 
     /**
@@ -52,14 +56,17 @@ public final class BitVector {
      * copy)
      * 
      * @param elements
-     *            bits of BitVector
+     *            bits of BitVector, the unused msb of the last long being 0
+     * @param size
+     *            size in bits
      */
-    private BitVector(int[] elements) {
+    private BitVector(long[] elements, int size) {
         this.elements = elements;
+        this.size = size;
     }
     
     /**
-     * Returns an int array, each int full of 0's (if defaultValue is false) or
+     * Returns a long array, each long full of 0's (if defaultValue is false) or
      * full of ones (if defaultValue is true)
      * 
      * @param size
@@ -70,22 +77,47 @@ public final class BitVector {
      *             if size is smaller or equals zero or size isn't a multiple of
      *             Integer.SIZE (32)
      */
-    private static int[] initializeArray(int size, boolean defaultValue) {
+    private static long[] initializeArray(int size, boolean defaultValue) {
         Preconditions.checkArgument(size > 0 && size % Integer.SIZE == 0);
         
-        int[] elements = new int[size / Integer.SIZE];
-        Arrays.fill(elements, defaultValue ? ALL_ONES : 0);
-
+        long[] elements = new long[longsFor(size)];
+        if (defaultValue) {
+            Arrays.fill(elements, ALL_ONES);
+            elements[elements.length - 1] &= lastMask(size);
+        }
         return elements;
     }
 
+    /**
+     * Number of longs needed to store given number of bits
+     * 
+     * @param size
+     *            size in bits, multiple of Integer.SIZE
+     * @return number of longs
+     */
+    private static int longsFor(int size) {
+        return (size + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Mask of the bits of the last long used by a vector of given size
+     * 
+     * @param size
+     *            size in bits, multiple of Integer.SIZE
+     * @return mask of the used bits
+     */
+    private static long lastMask(int size) {
+        return size % Long.SIZE == 0 ? ALL_ONES : ALL_ONES >>> Integer.SIZE;
+    }
+
     /**
      * Builder for BitVector Allows to create a BitVector incrementally, byte by
      * byte
      * 
      */
     public static final class Builder {
-        private int[] elements;
+        private long[] elements;
+        private final int size;
 
         /**
          * Creates a new active Builder
@@ -98,7 +130,8 @@ public final class BitVector {
          */
         public Builder(int size) {
             Preconditions.checkArgument(size > 0 && size % Integer.SIZE == 0);
-            elements = new int[size / Integer.SIZE];
+            elements = new long[longsFor(size)];
+            this.size = size;
         }
 
         /**
@@ -112,7 +145,7 @@ public final class BitVector {
             if (elements == null)
                 throw new IllegalStateException("Already built");
 
-            BitVector r = new BitVector(elements);
+            BitVector r = new BitVector(elements, size);
             elements = null;
 
             return r;
@@ -134,10 +167,39 @@ public final class BitVector {
         public Builder setByte(int index, int b) {
             if (elements == null)
                 throw new IllegalStateException("Already built");
-            Objects.checkIndex(index, elements.length * Integer.BYTES);
+            Objects.checkIndex(index, size / Byte.SIZE);
             Preconditions.checkBits8(b);
 
-            elements[index / Integer.BYTES] += b << (index * Byte.SIZE);
+            int shift = (index % Long.BYTES) * Byte.SIZE;
+            elements[index / Long.BYTES] &= ~(0xFFL << shift);
+            elements[index / Long.BYTES] |= (long) b << shift;
+            return this;
+        }
+
+        /**
+         * Sets group of Integer.SIZE bits at given index of pending
+         * BitVector, the counterpart of BitVector#word(int)
+         * 
+         * @param index
+         *            index of the group of bits
+         * @param word
+         *            bits of the group
+         * 
+         * @return builder this to allow to chain-calling
+         * 
+         * @throws IlegalStateException
+         *             if already built
+         * @throws IndexOutOfBoundsException
+         *             if given index isn't in [0, size() / Integer.SIZE[
+         */
+        public Builder setWord(int index, int word) {
+            if (elements == null)
+                throw new IllegalStateException("Already built");
+            Objects.checkIndex(index, size / Integer.SIZE);
+
+            int shift = (index % 2) * Integer.SIZE;
+            elements[index / 2] &= ~(0xFFFF_FFFFL << shift);
+            elements[index / 2] |= Integer.toUnsignedLong(word) << shift;
             return this;
         }
 
@@ -147,7 +209,7 @@ public final class BitVector {
          * @return Builder's size in bits
          */
         public int size() {
-            return elements.length * Integer.SIZE;
+            return size;
         }
     }
 
@@ -158,7 +220,7 @@ public final class BitVector {
      */
     @Override
     public boolean equals(Object thatO) {
-        return (thatO instanceof BitVector
+        return (thatO instanceof BitVector && size == ((BitVector) thatO).size
                 && Arrays.equals(elements, ((BitVector) thatO).elements));
     }
 
@@ -169,7 +231,7 @@ public final class BitVector {
      */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(elements);
+        return 31 * Arrays.hashCode(elements) + size;
     }
 
     /*
@@ -180,7 +242,7 @@ public final class BitVector {
     @Override
     public String toString() {
       StringBuilder sb = new StringBuilder();
-      for(int i = elements.length * Integer.SIZE - 1; i >= 0; i--) {
+      for(int i = size - 1; i >= 0; i--) {
           sb.append(testBit(i) ? "1" : "0");
       }
       return sb.toString();
@@ -192,7 +254,7 @@ public final class BitVector {
      * @return size in bits
      */
     public int size() {
-        return elements.length * Integer.SIZE;
+        return size;
     }
 
     /**
@@ -206,8 +268,24 @@ public final class BitVector {
      *             bits
      */
     public boolean testBit(int index) {
-        Objects.checkIndex(index, size());
-        return Bits.test(elements[index / Integer.SIZE], index % Integer.SIZE);
+        Objects.checkIndex(index, size);
+        return ((elements[index / Long.SIZE] >>> index) & 1) != 0;
+    }
+
+    /**
+     * Gives the index-th group of Integer.SIZE bits of this BitVector, to
+     * process it a whole int at a time : bit i of the result is bit (index *
+     * Integer.SIZE + i) of the vector
+     * 
+     * @param index
+     *            index of the group of bits
+     * @return bits of the group, as an int
+     * @throws IndexOutOfBoundsException
+     *             if given index isn't in [0, size() / Integer.SIZE[
+     */
+    public int word(int index) {
+        Objects.checkIndex(index, size / Integer.SIZE);
+        return (int) (elements[index / 2] >>> (index % 2 * Integer.SIZE));
     }
 
     /**
@@ -216,11 +294,12 @@ public final class BitVector {
      * @return bitwise "not", as a new BitVector
      */
     public BitVector not() {
-        int[] notElements = new int[elements.length];
+        long[] notElements = new long[elements.length];
         for (int i = 0; i < notElements.length; i++) {
             notElements[i] = ~elements[i];
         }
-        return new BitVector(notElements);
+        notElements[notElements.length - 1] &= lastMask(size);
+        return new BitVector(notElements, size);
     }
 
     /**
@@ -236,12 +315,12 @@ public final class BitVector {
      */
     public BitVector and(BitVector that) {
         int length = elements.length;
-        Preconditions.checkArgument(length == that.elements.length);
+        Preconditions.checkArgument(size == that.size);
 
-        int[] res = new int[length];
+        long[] res = new long[length];
         for (int i = 0; i < length; i++)
             res[i] = elements[i] & that.elements[i];
-        return new BitVector(res);
+        return new BitVector(res, size);
     }
 
     /**
@@ -257,12 +336,12 @@ public final class BitVector {
      */
     public BitVector or(BitVector that) {
         int length = elements.length;
-        Preconditions.checkArgument(length == that.elements.length);
+        Preconditions.checkArgument(size == that.size);
 
-        int[] res = new int[length];
+        long[] res = new long[length];
         for (int i = 0; i < length; i++) 
             res[i] = elements[i] | that.elements[i];
-        return new BitVector(res);
+        return new BitVector(res, size);
     }
 
     /**
@@ -277,12 +356,12 @@ public final class BitVector {
      */
     public BitVector xor(BitVector that) {
         int length = elements.length;
-        Preconditions.checkArgument(length == that.elements.length);
+        Preconditions.checkArgument(size == that.size);
 
-        int[] res = new int[length];
+        long[] res = new long[length];
         for (int i = 0; i < length; i++)
             res[i] = elements[i] ^ that.elements[i];
-        return new BitVector(res);
+        return new BitVector(res, size);
     }
 
     /**
@@ -346,70 +425,83 @@ public final class BitVector {
      */
     private BitVector extract(int fromIndex, int size, ExtractType type) {
         Preconditions.checkArgument(size > 0 && size % Integer.SIZE == 0);
-        int[] extracted = new int[size / Integer.SIZE];
-
-        int relativeIndex = Math.floorMod(fromIndex, Integer.SIZE);
-        int chunk = Math.floorDiv(fromIndex, Integer.SIZE);
-        for (int i = 0; i < extracted.length; i++)
-            extracted[i] = combinedExtended32bits(relativeIndex, chunk++, type);
+        long[] extracted = new long[longsFor(size)];
+
+        // Wrapping around a size which isn't a multiple of 64 can't be done a
+        // long at a time
+        if (type == ExtractType.WRAPPED && this.size % Long.SIZE != 0) {
+            for (int i = 0; i < extracted.length; i++) {
+                long low = Integer.toUnsignedLong(
+                        wrapped32bits(fromIndex + i * Long.SIZE));
+                long high = wrapped32bits(fromIndex + i * Long.SIZE + Integer.SIZE);
+                extracted[i] = low | (high << Integer.SIZE);
+            }
+        } else {
+            int relativeIndex = Math.floorMod(fromIndex, Long.SIZE);
+            int chunk = Math.floorDiv(fromIndex, Long.SIZE);
+            for (int i = 0; i < extracted.length; i++)
+                extracted[i] = combinedExtended64bits(relativeIndex, chunk++, type);
+        }
+        extracted[extracted.length - 1] &= lastMask(size);
 
-        return new BitVector(extracted);
+        return new BitVector(extracted, size);
     }
 
     /**
-     * Combines 2 consecutive parts of 32 bit chunks into a new 32 bit chunk,
+     * Combines 2 consecutive parts of 64 bit chunks into a new 64 bit chunk,
      * eventually adding 0's or "wrapping around" according to given ExtractType
      * 
      * @param index
-     *            index in chunk, included in [0;31]
+     *            index in chunk, included in [0;63]
      * @param chunk
      *            chunk to start extraction from
      * @param type
-     *            extraction type (ZERO_EXT adds 0's, WRAPPED wraps around)
-     * @return extracted 32 bit chunk
+     *            extraction type (ZERO_EXT adds 0's, WRAPPED wraps around, the
+     *            size being a multiple of 64)
+     * @return extracted 64 bit chunk
      */
-    private int combinedExtended32bits(int index, int chunk, ExtractType type) {
-
-        int bits = 0;
-        int complIndex = Integer.SIZE - index;
-
-        // Optimal case
-        if (index == 0) {
-            switch (type) {
-            case WRAPPED:
-                bits = elements[Math.floorMod(chunk, elements.length)];
-                break;
-
-            case ZERO_EXT:
-                if (chunk >= 0 && chunk < elements.length)
-                    bits = elements[chunk];
-                break;
-            }
-        } else {
-            switch (type) {
-            case WRAPPED:
-                // MSBs of chunk starting from index as bits LSBs
-                bits = Bits.extract(
-                        elements[Math.floorMod(chunk, elements.length)], index,
-                        complIndex);
-
-                // LSBs of next chunk as bits MSBs
-                bits |= Bits.clip(index, elements[Math.floorMod(chunk + 1,
-                        elements.length)]) << complIndex;
-                break;
-
-            case ZERO_EXT:
-                // MSBs of chunk starting from index as bits LSBs
-                if (chunk >= 0 && chunk < elements.length)
-                    bits |= Bits.extract(elements[chunk], index, complIndex);
-
-                // LSBs of next chunk as bits MSBs
-                if (chunk + 1 >= 0 && chunk + 1 < elements.length)
-                    bits |= Bits.clip(index, elements[chunk + 1]) << complIndex;
-                break;
-            }
-        }
-        return bits;
+    private long combinedExtended64bits(int index, int chunk, ExtractType type) {
+        long low = chunk(chunk, type);
+        if (index == 0)
+            return low;
+
+        // MSBs of chunk starting from index as LSBs, LSBs of next chunk as MSBs
+        return (low >>> index) | (chunk(chunk + 1, type) << (Long.SIZE - index));
+    }
+
+    /**
+     * Gives the 64 bit chunk at given index, which may be outside of the
+     * vector
+     * 
+     * @param chunk
+     *            index of the chunk
+     * @param type
+     *            extraction type (ZERO_EXT gives 0's outside, WRAPPED wraps
+     *            around)
+     * @return chunk at given index
+     */
+    private long chunk(int chunk, ExtractType type) {
+        if (type == ExtractType.WRAPPED)
+            return elements[Math.floorMod(chunk, elements.length)];
+        return chunk >= 0 && chunk < elements.length ? elements[chunk] : 0;
     }
 
+    /**
+     * Extracts 32 bits starting at given index, wrapping around
+     * 
+     * @param fromIndex
+     *            index of the lsb to extract
+     * @return extracted 32 bits
+     */
+    private int wrapped32bits(int fromIndex) {
+        int words = size / Integer.SIZE;
+        int index = Math.floorMod(fromIndex, Integer.SIZE);
+        int chunk = Math.floorDiv(fromIndex, Integer.SIZE);
+
+        int low = word(Math.floorMod(chunk, words));
+        if (index == 0)
+            return low;
+        int high = word(Math.floorMod(chunk + 1, words));
+        return (low >>> index) | (high << (Integer.SIZE - index));
+    }
 }
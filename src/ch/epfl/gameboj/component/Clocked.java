@@ -14,4 +14,37 @@ public interface Clocked {
      *            the cycle index
      */
     public abstract void cycle(long cycle);
+
+    /**
+     * Gives the first cycle, not before given one, at which calling
+     * {@link #cycle(long)} can have an effect. Components which have to be
+     * clocked at every cycle keep the default, which is given cycle
+     * 
+     * @param cycle
+     *            the current cycle index
+     * @return index of next cycle at which component has something to do, or
+     *         Long.MAX_VALUE if it is idle until something else wakes it up
+     */
+    public default long nextEventCycle(long cycle) {
+        return cycle;
+    }
+
+    /**
+     * Called when the next event of the component, at given cycle, comes
+     * strictly before the next event of any other component, which is at
+     * given horizon (or the run stops then). Lets the component skip work it
+     * would repeat identically until the horizon, without any observable
+     * difference. Components which can't do so keep the default, which skips
+     * nothing
+     * 
+     * @param cycle
+     *            the cycle of the next event of the component
+     * @param horizon
+     *            the first cycle at which something else can happen
+     * @return index of next cycle at which component has something to do, as
+     *         {@link #nextEventCycle(long)}
+     */
+    public default long skipIdleCycles(long cycle, long horizon) {
+        return nextEventCycle(cycle);
+    }
 }
@@ -5,17 +5,20 @@
 
 package ch.epfl.gameboj.component;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 
-public final class Joypad implements Component {
+public final class Joypad implements Component, Stateful {
 
     private static final int LINE_SIZE = 4;
+    private static final int STATE_SIZE = 3;
     
     public enum Key {
         RIGHT, LEFT, UP, DOWN, A, B, SELECT, START
@@ -63,6 +66,43 @@ public final class Joypad implements Component {
         }
     }
 
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#attachTo(ch.epfl.gameboj.Bus)
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, AddressMap.REG_P1, AddressMap.REG_P1 + 1);
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return STATE_SIZE;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer state) {
+        state.put((byte) lines[0]).put((byte) lines[1])
+                .put((byte) ((select1 ? 2 : 0) | (select0 ? 1 : 0)));
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer state) {
+        lines[0] = Bits.clip(LINE_SIZE, state.get());
+        lines[1] = Bits.clip(LINE_SIZE, state.get());
+        int selects = state.get();
+        select0 = Bits.test(selects, 0);
+        select1 = Bits.test(selects, 1);
+    }
+
     /**
      * Simulates GameBoy's key pressed
      * @param key one of the joypad's keys
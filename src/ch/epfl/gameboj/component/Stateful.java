@@ -0,0 +1,41 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Part of the GameBoy whose state can be written to a buffer and restored
+ * from it, to make save states of the whole machine
+ */
+public interface Stateful {
+
+    /**
+     * Gives the number of bytes saveState writes, which is also the number of
+     * bytes loadState reads
+     *
+     * @return size of the state, in bytes
+     */
+    public abstract int stateSize();
+
+    /**
+     * Writes the state at the current position of given buffer, advancing it
+     * by stateSize() bytes
+     *
+     * @param state
+     *            buffer to write the state in
+     */
+    public abstract void saveState(ByteBuffer state);
+
+    /**
+     * Restores the state written by saveState at the current position of
+     * given buffer, advancing it by stateSize() bytes
+     *
+     * @param state
+     *            buffer to read the state from
+     */
+    public abstract void loadState(ByteBuffer state);
+}
@@ -5,17 +5,27 @@
 
 package ch.epfl.gameboj.component;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 
-public final class Timer implements Clocked, Component {
+/*
+ * The timer is lazy : instead of incrementing its counters at every cycle, it
+ * remembers the last cycle up to which they are up-to-date and catches up
+ * (arithmetically) whenever they are observed or modified. The only event it
+ * has to be clocked for is the overflow of TIMA, which requests an interrupt
+ */
+public final class Timer implements Clocked, Component, Stateful {
 
     private static final int MAIN_TIMER_INCREMENT = 4;
+    private static final int TIMA_OVERFLOW = 0x100;
+    private static final int STATE_SIZE = Short.BYTES + 3 + 2 * Long.BYTES;
     
     private final Cpu cpu;
     
@@ -23,6 +33,9 @@ public final class Timer implements Clocked, Component {
     
     private static final int[] tacValues = { 9, 3, 5, 7 };
 
+    // last cycle given to cycle(), and last cycle counters are up-to-date with
+    private long currentCycle = -1, syncedCycle = -1;
+
     /**
      * Constructs Timer for given cpu
      * 
@@ -38,11 +51,24 @@ public final class Timer implements Clocked, Component {
      */
     @Override
     public void cycle(long cycle) {
-        boolean s0 = state();
-
-        DIV = Bits.clip(16, DIV + MAIN_TIMER_INCREMENT);
+        currentCycle = cycle;
+        sync();
+    }
 
-        incIfChange(s0);
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Clocked#nextEventCycle(long)
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        if (!timerIsOn())
+            return Long.MAX_VALUE;
+
+        // TIMA overflows on the (0x100 - TIMA)-th falling edge of the
+        // (TIMA-setup)-th bit of DIV, ie. when DIV reaches a multiple of the
+        // period of that bit
+        long period = 1L << (TIMA_setup() + 1);
+        long overflowDiv = (DIV / period + TIMA_OVERFLOW - TIMA) * period;
+        return syncedCycle + (overflowDiv - DIV) / MAIN_TIMER_INCREMENT;
     }
 
     
@@ -55,8 +81,10 @@ public final class Timer implements Clocked, Component {
 
         switch (address) {
         case AddressMap.REG_DIV:
+            sync();
             return Bits.extract(DIV, 8, 8);
         case AddressMap.REG_TIMA:
+            sync();
             return TIMA;
         case AddressMap.REG_TMA:
             return TMA;
@@ -75,6 +103,10 @@ public final class Timer implements Clocked, Component {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
 
+        if (address < AddressMap.REG_DIV || address > AddressMap.REG_TAC)
+            return;
+
+        sync();
         boolean s0 = state();
 
         switch (address) {
@@ -94,6 +126,65 @@ public final class Timer implements Clocked, Component {
         incIfChange(s0);
     }
 
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#attachTo(ch.epfl.gameboj.Bus)
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, AddressMap.REG_DIV, AddressMap.REG_TAC + 1);
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return STATE_SIZE;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer state) {
+        state.putShort((short) DIV).put((byte) TIMA).put((byte) TMA)
+                .put((byte) TAC).putLong(currentCycle).putLong(syncedCycle);
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer state) {
+        DIV = Short.toUnsignedInt(state.getShort());
+        TIMA = Byte.toUnsignedInt(state.get());
+        TMA = Byte.toUnsignedInt(state.get());
+        TAC = Byte.toUnsignedInt(state.get());
+        currentCycle = state.getLong();
+        syncedCycle = state.getLong();
+    }
+
+    /**
+     * Brings counters up-to-date with the current cycle, as if they had been
+     * incremented at every cycle since the last synchronization
+     */
+    private void sync() {
+        long elapsed = currentCycle - syncedCycle;
+        if (elapsed <= 0)
+            return;
+        syncedCycle = currentCycle;
+
+        long oldDiv = DIV;
+        long newDiv = oldDiv + elapsed * MAIN_TIMER_INCREMENT;
+        DIV = (int) (newDiv & 0xFFFF);
+
+        if (timerIsOn()) {
+            // number of falling edges of the (TIMA-setup)-th bit of DIV
+            int periodBits = TIMA_setup() + 1;
+            incTIMA((newDiv >> periodBits) - (oldDiv >> periodBits));
+        }
+    }
+
     /**
      * Getter for secondary timer's increase rate amongst (3, 5, 7 or 9)
      * 
@@ -122,22 +213,33 @@ public final class Timer implements Clocked, Component {
     }
 
     /**
-     * If previous state is true and current state is false increments TIMA. If
-     * this produces an overflow, requests cpu interrupt and resets TIMA to TMA
-     * value
+     * If previous state is true and current state is false increments TIMA
      * 
      * @param previousState
      *            value of the previous state
      */
     private void incIfChange(boolean previousState) {
+        if (previousState && !state())
+            incTIMA(1);
+    }
 
-        if (previousState && !state()) {
-            if (TIMA == 0xFF) {
-                TIMA = TMA;
-                cpu.requestInterrupt(Interrupt.TIMER);
-            } else {
-                TIMA += 1;
+    /**
+     * Increments TIMA given number of times. On each overflow, requests cpu
+     * interrupt and resets TIMA to TMA value
+     * 
+     * @param count
+     *            number of increments
+     */
+    private void incTIMA(long count) {
+        while (count > 0) {
+            int toOverflow = TIMA_OVERFLOW - TIMA;
+            if (count < toOverflow) {
+                TIMA += count;
+                return;
             }
+            count -= toOverflow;
+            TIMA = TMA;
+            cpu.requestInterrupt(Interrupt.TIMER);
         }
     }
 
@@ -6,19 +6,42 @@
 package ch.epfl.gameboj.component.cartridge;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class Cartridge implements Component, Savable {
+public final class Cartridge implements Component, Savable, Stateful {
 
     private static final int MBC_TYPE_ADDRESS = 0x147, RAM_SIZE_ADDRESS = 0x149;
     private static final int[] RAM_SIZES = {0, 2048, 8192, 32768};
+    // end of the header, whose last bytes are the checksums of the ROM
+    private static final int HEADER_END = 0x150;
+
+    // Roms loaded so far, by digest of their content, and by canonical path,
+    // size, modification time and header of their file, which spares mapping
+    // and digesting a file loaded again. Roms being immutable, all cartridges
+    // made from identical files share the same one. They are only softly
+    // referenced, so that the Roms no cartridge uses can be collected
+    private static final Map<String, Reference<Rom>> ROMS_BY_DIGEST =
+            new ConcurrentHashMap<>();
+    private static final Map<String, Reference<Rom>> ROMS_BY_FILE =
+            new ConcurrentHashMap<>();
     
-    private final Component mbc;
+    private final MemoryBankController mbc;
 
     /**
      * Private constructor for Cartridge 
@@ -27,12 +50,13 @@ public final class Cartridge implements Component, Savable {
      * @param mbc
      *            associated Memory Bank Controller
      */
-    private Cartridge(Component mbc) {
+    private Cartridge(MemoryBankController mbc) {
         this.mbc = mbc;
     }
 
     /**
-     * Reads rom data from file, and constructs Rom, corresponding MBC, and
+     * Reads rom data from file, and constructs Rom (or reuses the one of a
+     * previously loaded file with the same content), corresponding MBC, and
      * Cartridge from it
      * 
      * @param romFile
@@ -46,17 +70,134 @@ public final class Cartridge implements Component, Savable {
      *             isn't 0, 1, 2 or 3
      */
     public static Cartridge ofFile(File romFile) throws IOException {
-        try (FileInputStream s = new FileInputStream(romFile)) {
-            byte[] data = s.readAllBytes();
-            int mbcType = data[MBC_TYPE_ADDRESS];
-            
-            Preconditions.checkArgument(mbcType >= 0 && mbcType <= 3);
-            
-            if(mbcType == 0) 
-                return new Cartridge(new MBC0(new Rom(data)));
-            else {
-                return new Cartridge(new MBC1(new Rom(data), RAM_SIZES[data[RAM_SIZE_ADDRESS]]));
+        return ofFile(romFile, null);
+    }
+
+    /**
+     * Reads rom data from file, and constructs Cartridge from it, like
+     * ofFile(File), but with the ram of the cartridge, if it has some, backed
+     * by given save file
+     * 
+     * @param romFile
+     *            file containing the ROM data
+     * @param saveFile
+     *            file holding the ram of the cartridge, created if it doesn't
+     *            exist, or null to keep the ram in memory only
+     * @return Cartridge constructed from romFile data
+     * @throws IOException
+     *             if any IO problem occurs, including if given romFile doesn't
+     *             exist
+     * @throws IllegalArgumentException
+     *             if given romFile 147th's bit (used to identify MBC type)
+     *             isn't 0, 1, 2 or 3
+     */
+    public static Cartridge ofFile(File romFile, File saveFile) throws IOException {
+        Rom rom = romOfFile(romFile);
+        int mbcType = rom.read(MBC_TYPE_ADDRESS);
+
+        Preconditions.checkArgument(mbcType >= 0 && mbcType <= 3);
+
+        if(mbcType == 0) 
+            return new Cartridge(new MBC0(rom));
+        else {
+            int ramSize = RAM_SIZES[rom.read(RAM_SIZE_ADDRESS)];
+            if (saveFile == null || ramSize == 0)
+                return new Cartridge(new MBC1(rom, ramSize));
+            return new Cartridge(new MBC1(rom, SaveFile.open(saveFile, ramSize)));
+        }
+    }
+
+    /**
+     * Returns the Rom having the content of given file, shared with all the
+     * cartridges loaded from files with the same content. The file is only
+     * mapped in memory and digested if no file with the same path, size,
+     * modification time and header (ending with the checksums of the ROM)
+     * was loaded before. The Rom returned can thus be stale : a file
+     * rewritten keeping all of those, for instance without updating the
+     * checksums, is still given the content it had when first loaded
+     * 
+     * @param romFile
+     *            file containing the ROM data
+     * @return Rom with the content of the file
+     * @throws IOException
+     *             if any IO problem occurs, including if given romFile doesn't
+     *             exist
+     */
+    static Rom romOfFile(File romFile) throws IOException {
+        try (FileChannel c = FileChannel.open(romFile.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer
+                    .allocate((int) Math.min(HEADER_END, c.size()));
+            while (header.hasRemaining()) {
+                if (c.read(header, header.position()) < 0)
+                    throw new IOException("file shrunk while being read");
+            }
+            String fileKey = romFile.getCanonicalPath() + ':' + c.size() + ':'
+                    + romFile.lastModified() + ':'
+                    + Base64.getEncoder().encodeToString(header.array());
+            Rom rom = cached(ROMS_BY_FILE, fileKey);
+            if (rom != null)
+                return rom;
+
+            ByteBuffer data = c.map(MapMode.READ_ONLY, 0, c.size());
+            String digest = digest(data);
+            rom = cached(ROMS_BY_DIGEST, digest);
+            if (rom == null) {
+                rom = Rom.ofBuffer(data);
+                cache(ROMS_BY_DIGEST, digest, rom);
             }
+            cache(ROMS_BY_FILE, fileKey, rom);
+            return rom;
+        }
+    }
+
+    /**
+     * Gets the Rom cached under given key, if it wasn't collected
+     * 
+     * @param cache
+     *            cache to look into
+     * @param key
+     *            key of the Rom
+     * @return cached Rom, or null if there is none
+     */
+    private static Rom cached(Map<String, Reference<Rom>> cache, String key) {
+        Reference<Rom> ref = cache.get(key);
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * Caches given Rom under given key, removing the entries whose Rom was
+     * collected, so that the keys of files changed since don't pile up
+     * 
+     * @param cache
+     *            cache to store the Rom in
+     * @param key
+     *            key of the Rom
+     * @param rom
+     *            Rom to cache
+     */
+    private static void cache(Map<String, Reference<Rom>> cache, String key,
+            Rom rom) {
+        cache.values().removeIf(r -> r.get() == null);
+        cache.put(key, new SoftReference<>(rom));
+    }
+
+    /**
+     * Computes the SHA-256 digest of the remaining bytes of given buffer,
+     * leaving its position unchanged
+     * 
+     * @param data
+     *            buffer to digest
+     * @return digest, encoded in base 64
+     */
+    private static String digest(ByteBuffer data) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(data.duplicate());
+            return Base64.getEncoder().encodeToString(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new Error(e);
         }
     }
 
@@ -79,6 +220,30 @@ public final class Cartridge implements Component, Savable {
         mbc.write(address, data);
     }
 
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return mbc.stateSize();
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer state) {
+        mbc.saveState(state);
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer state) {
+        mbc.loadState(state);
+    }
+
     @Override
     public byte[] save() {
         return (mbc instanceof Savable) ? ((Savable)mbc).save() : null;
@@ -90,4 +255,10 @@ public final class Cartridge implements Component, Savable {
             ((Savable)mbc).load(data);
     }
 
+    @Override
+    public void flush() {
+        if(mbc instanceof Savable)
+            ((Savable)mbc).flush();
+    }
+
 }
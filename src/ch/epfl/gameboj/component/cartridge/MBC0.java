@@ -5,17 +5,13 @@
 
 package ch.epfl.gameboj.component.cartridge;
 
-import java.util.Objects;
-
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC0 implements Component {
+public final class MBC0 extends MemoryBankController {
     
     private static final int ROM_SIZE = 0x8000;
-    
-    private final Rom rom;
 
     /**
      * Constructs Memory Bank Controller (type 0) for given Rom
@@ -28,31 +24,15 @@ public final class MBC0 implements Component {
      *             if given rom doesn't exist
      */
     public MBC0(Rom rom) {
-        Objects.requireNonNull(rom);
+        super(rom, (Ram) null);
         Preconditions.checkArgument(rom.size() == ROM_SIZE);
-
-        this.rom = rom;
-    }
-
-    /* (non-Javadoc)
-     * @see ch.epfl.gameboj.component.Component#read(int)
-     */
-    @Override
-    public int read(int address) {
-        Preconditions.checkBits16(address);
-        if (address < ROM_SIZE) {
-            return rom.read(address);
-        }
-        return NO_DATA;
     }
 
     /* (non-Javadoc)
-     * @see ch.epfl.gameboj.component.Component#write(int, int)
+     * @see ch.epfl.gameboj.component.cartridge.MemoryBankController#writeControl(int, int)
      */
     @Override
-    public void write(int address, int data) {
-        Preconditions.checkBits16(address);
-        Preconditions.checkBits8(data);
+    protected void writeControl(int address, int data) {
         // Does nothing
     }
 
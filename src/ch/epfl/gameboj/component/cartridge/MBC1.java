@@ -1,59 +1,53 @@
 package ch.epfl.gameboj.component.cartridge;
 
-import static ch.epfl.gameboj.Preconditions.checkBits16;
-import static ch.epfl.gameboj.Preconditions.checkBits8;
+import java.nio.ByteBuffer;
 
 import ch.epfl.gameboj.bits.Bits;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC1 implements Component, Savable {
+public final class MBC1 extends MemoryBankController implements Savable {
     private static final int RAM_ENABLE = 0xA;
+    private static final int REGS_STATE_SIZE = 3;
 
     private enum Mode { MODE_0, MODE_1 };
 
-    private final Rom rom;
-    private Ram ram;
-
-    private boolean ramEnabled;
     private Mode mode;
     private int romLsb5, ramRom2;
-    private final int romMask, ramMask;
 
     public MBC1(Rom rom, int ramSize) {
-        this.rom = rom;
-        this.ram = new Ram(ramSize);
+        super(rom, new Ram(ramSize));
+        reset();
+    }
+
+    /**
+     * Constructs an MBC1 whose ram is backed by given save file
+     *
+     * @param rom
+     *            rom of the cartridge
+     * @param saveFile
+     *            save file backing the ram, of the size of the ram
+     * @throws NullPointerException
+     *             if given rom or save file is null
+     */
+    public MBC1(Rom rom, SaveFile saveFile) {
+        super(rom, saveFile);
+        reset();
+    }
 
-        this.ramEnabled = false;
+    private void reset() {
         this.mode = Mode.MODE_0;
         this.romLsb5 = 1;
         this.ramRom2 = 0;
-
-        this.romMask = rom.size() - 1;
-        this.ramMask = ramSize - 1;
-    }
-
-    public int read(int address) {
-        switch (Bits.extract(checkBits16(address), 13, 3)) {
-        case 0: case 1:
-            return rom.read(romAddress(msb2(), 0, address));
-        case 2: case 3:
-            return rom.read(romAddress(ramRom2, romLsb5, address));
-        case 5:
-            return ramEnabled ? ram.read(ramAddress(address)) : 0xFF;
-        default:
-            return NO_DATA;
-        }
+        mapBanks();
     }
 
     @Override
-    public void write(int address, int data) {
-        checkBits8(data);
-        switch (Bits.extract(checkBits16(address), 13, 3)) {
+    protected void writeControl(int address, int data) {
+        switch (Bits.extract(address, 13, 2)) {
         case 0:
-            ramEnabled = Bits.clip(4, data) == RAM_ENABLE;
-            break;
+            setRamEnabled(Bits.clip(4, data) == RAM_ENABLE);
+            return;
         case 1:
             romLsb5 = Math.max(1, Bits.clip(5, data));
             break;
@@ -63,36 +57,43 @@ public final class MBC1 implements Component, Savable {
         case 3:
             mode = Bits.test(data, 0) ? Mode.MODE_1 : Mode.MODE_0;
             break;
-        case 5:
-            if (ramEnabled)
-                ram.write(ramAddress(address), data);
-            break;
         }
+        mapBanks();
     }
 
-    private int msb2() {
-        switch (mode) {
-        case MODE_0: return 0;
-        case MODE_1: return ramRom2;
-        default: throw new Error();
-        }
+    private void mapBanks() {
+        int msb2 = mode == Mode.MODE_1 ? ramRom2 : 0;
+        mapBanks(msb2 << 5, (ramRom2 << 5) | romLsb5, msb2);
+    }
+
+    @Override
+    public int stateSize() {
+        return super.stateSize() + REGS_STATE_SIZE;
     }
 
-    private int romAddress(int b_20_19, int b_18_14, int b_13_0) {
-        return ((b_20_19 << 19) | (b_18_14 << 14) | Bits.clip(14, b_13_0)) & romMask;
+    @Override
+    public void saveState(ByteBuffer state) {
+        super.saveState(state);
+        state.put((byte) mode.ordinal()).put((byte) romLsb5)
+                .put((byte) ramRom2);
     }
 
-    private int ramAddress(int b_12_0) {
-        return ((msb2() << 13) | Bits.clip(13, b_12_0)) & ramMask;
+    @Override
+    public void loadState(ByteBuffer state) {
+        super.loadState(state);
+        mode = Mode.values()[Bits.clip(1, state.get())];
+        romLsb5 = Math.max(1, Bits.clip(5, state.get()));
+        ramRom2 = Bits.clip(2, state.get());
+        mapBanks();
     }
 
     @Override
     public byte[] save() {
-        return ram.getData();
+        return ram().getData();
     }
 
     @Override
     public void load(byte[] data) {
-        ram = new Ram(data);
+        replaceRam(new Ram(data));
     }
 }
@@ -0,0 +1,235 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.cartridge;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * Base of memory bank controllers : maps a fixed and a switchable ROM bank at
+ * 0x0000-0x3FFF and 0x4000-0x7FFF, and possibly a RAM bank at 0xA000-0xBFFF.
+ * Subclasses interpret writes to the ROM area as they like, and call mapBanks
+ * when the selected banks change, so that reads only have to add an offset
+ * to the base of the bank. The ram can be backed by a save file, to which
+ * flush writes what changed since the previous flush
+ */
+public abstract class MemoryBankController implements Component, Stateful {
+
+    protected static final int ROM_BANK_SIZE = 0x4000, RAM_BANK_SIZE = 0x2000;
+
+    private final Rom rom;
+    private final int romMask, ramOffsetMask;
+    private final SaveFile saveFile;
+    private Ram ram;
+
+    private int rom0Base = 0, romXBase = ROM_BANK_SIZE, ramBase = 0;
+    private boolean ramEnabled = false;
+
+    /**
+     * Constructs a memory bank controller for given rom and ram, with banks 0
+     * and 1 of the rom and bank 0 of the ram mapped, and ram disabled
+     *
+     * @param rom
+     *            rom of the cartridge, of a power of two size
+     * @param ram
+     *            ram of the cartridge, or null if it has no ram area at all
+     * @throws NullPointerException
+     *             if given rom is null
+     */
+    protected MemoryBankController(Rom rom, Ram ram) {
+        this(rom, ram, null);
+    }
+
+    /**
+     * Constructs a memory bank controller for given rom, whose ram is backed
+     * by given save file and initially holds its content
+     *
+     * @param rom
+     *            rom of the cartridge, of a power of two size
+     * @param saveFile
+     *            save file backing the ram of the cartridge
+     * @throws NullPointerException
+     *             if given rom or save file is null
+     */
+    protected MemoryBankController(Rom rom, SaveFile saveFile) {
+        this(rom, new Ram(saveFile.content()), saveFile);
+    }
+
+    private MemoryBankController(Rom rom, Ram ram, SaveFile saveFile) {
+        this.rom = Objects.requireNonNull(rom);
+        this.ram = ram;
+        this.saveFile = saveFile;
+
+        romMask = rom.size() - 1;
+        int ramSize = ram == null ? 0 : ram.size();
+        ramOffsetMask = ramSize == 0 ? RAM_BANK_SIZE - 1
+                : Math.min(RAM_BANK_SIZE, ramSize) - 1;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#read(int)
+     */
+    @Override
+    public final int read(int address) {
+        Preconditions.checkBits16(address);
+
+        if (address < ROM_BANK_SIZE)
+            return rom.read(rom0Base + address);
+        if (address < AddressMap.ROM_END)
+            return rom.read(romXBase + (address - ROM_BANK_SIZE));
+        if (isRamAddress(address))
+            return ramEnabled ? ram.read(ramBase + (address & ramOffsetMask))
+                    : 0xFF;
+        return NO_DATA;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#write(int, int)
+     */
+    @Override
+    public final void write(int address, int data) {
+        Preconditions.checkBits16(address);
+        Preconditions.checkBits8(data);
+
+        if (address < AddressMap.ROM_END)
+            writeControl(address, data);
+        else if (isRamAddress(address) && ramEnabled) {
+            int index = ramBase + (address & ramOffsetMask);
+            ram.write(index, data);
+            if (saveFile != null)
+                saveFile.markDirty(index);
+        }
+    }
+
+    /**
+     * Writes the pages of the ram modified since the last flush to the save
+     * file backing it, if any. Cheap when nothing changed, so that it can be
+     * called once per frame
+     */
+    public final void flush() {
+        if (saveFile != null)
+            saveFile.flush(ram);
+    }
+
+    /*
+     * The state of the base class is the ram and whether it is enabled.
+     * Subclasses append the state of their registers, and map the banks
+     * they select once it is loaded
+     * 
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return 1 + (ram == null ? 0 : ram.stateSize());
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer state) {
+        state.put((byte) (ramEnabled ? 1 : 0));
+        if (ram != null)
+            ram.saveState(state);
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer state) {
+        ramEnabled = state.get() != 0;
+        if (ram != null) {
+            ram.loadState(state);
+            if (saveFile != null)
+                saveFile.markAllDirty();
+        }
+    }
+
+    /**
+     * Handles a write to the ROM area, which controls the bank controller
+     *
+     * @param address
+     *            address written, between 0x0000 and 0x7FFF
+     * @param data
+     *            8-bit value written
+     */
+    protected abstract void writeControl(int address, int data);
+
+    /**
+     * Selects the banks mapped in the address space, banks out of the rom or
+     * ram wrapping around
+     *
+     * @param rom0Bank
+     *            rom bank mapped at 0x0000-0x3FFF
+     * @param romXBank
+     *            rom bank mapped at 0x4000-0x7FFF
+     * @param ramBank
+     *            ram bank mapped at 0xA000-0xBFFF
+     */
+    protected final void mapBanks(int rom0Bank, int romXBank, int ramBank) {
+        rom0Base = (rom0Bank * ROM_BANK_SIZE) & romMask;
+        romXBase = (romXBank * ROM_BANK_SIZE) & romMask;
+        ramBase = ram == null || ram.size() == 0 ? 0
+                : (ramBank * RAM_BANK_SIZE) & (ram.size() - 1);
+    }
+
+    /**
+     * Enables or disables access to the ram. While disabled, it reads as 0xFF
+     * and ignores writes
+     *
+     * @param enabled
+     *            true to enable ram access
+     */
+    protected final void setRamEnabled(boolean enabled) {
+        ramEnabled = enabled;
+    }
+
+    /**
+     * Getter for the ram of the cartridge
+     *
+     * @return ram of the cartridge, or null if it has none
+     */
+    protected final Ram ram() {
+        return ram;
+    }
+
+    /**
+     * Replaces the ram of the cartridge, keeping the selected banks. The whole
+     * new ram is written to the save file at next flush, if there is one
+     *
+     * @param ram
+     *            new ram, of the same size as the previous one
+     * @throws NullPointerException
+     *             if given ram is null
+     */
+    protected final void replaceRam(Ram ram) {
+        this.ram = Objects.requireNonNull(ram);
+        if (saveFile != null)
+            saveFile.markAllDirty();
+    }
+
+    /**
+     * Tells whether given address is in the cartridge ram area, if there is
+     * one
+     *
+     * @param address
+     *            16-bit address
+     * @return true iff given address is mapped to the ram
+     */
+    private boolean isRamAddress(int address) {
+        return ram != null && address >= AddressMap.CARTRIDGE_RAM_START
+                && address < AddressMap.CARTRIDGE_RAM_END;
+    }
+}
@@ -17,4 +17,11 @@ public interface Savable {
      * @param data data to load
      */
     public abstract void load(byte[] data);
+
+    /**
+     * Writes data modified since the last flush to the file backing it, if
+     * there is one
+     */
+    public default void flush() {
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.cartridge;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * Battery save file of a cartridge, mapped in memory. The ram of the
+ * cartridge marks the pages it writes as dirty, and flushing copies only those
+ * pages to the mapping. Once there, the data survives a crash of the emulator,
+ * the system writing it back to the file by itself ; flushing additionally
+ * asks it to do so in the background
+ */
+public final class SaveFile {
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGES_PER_WORD_BITS = 6;
+
+    // Forces the mappings to the disk, away from the emulation thread
+    private static final ExecutorService FORCER = Executors
+            .newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "save-file-forcer");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final MappedByteBuffer data;
+    private final long[] dirtyPages;
+    private final AtomicBoolean forcePending = new AtomicBoolean();
+    private boolean dirty = false;
+
+    private SaveFile(MappedByteBuffer data) {
+        this.data = data;
+        int pages = (data.capacity() + PAGE_SIZE - 1) >> PAGE_BITS;
+        dirtyPages = new long[(pages + Long.SIZE - 1) >> PAGES_PER_WORD_BITS];
+    }
+
+    /**
+     * Opens given save file and maps its first bytes in memory, creating it or
+     * extending it with zeros if needed
+     *
+     * @param file
+     *            save file
+     * @param size
+     *            size of the saved data, in bytes
+     * @return save file mapped in memory
+     * @throws IOException
+     *             if any IO problem occurs
+     * @throws IllegalArgumentException
+     *             if given size isn't strictly positive
+     */
+    public static SaveFile open(File file, int size) throws IOException {
+        Preconditions.checkArgument(size > 0);
+        try (FileChannel c = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // the mapping stays valid once the channel is closed
+            return new SaveFile(c.map(MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    /**
+     * Getter for the size of the saved data
+     *
+     * @return size of the saved data, in bytes
+     */
+    public int size() {
+        return data.capacity();
+    }
+
+    /**
+     * Reads the saved data
+     *
+     * @return copy of the content of the file
+     */
+    public byte[] content() {
+        byte[] content = new byte[size()];
+        data.duplicate().get(content);
+        return content;
+    }
+
+    /**
+     * Marks the page containing given index as modified, so that next flush
+     * writes it to the file
+     *
+     * @param index
+     *            index of the modified byte, between 0 (inclusive) and size
+     *            (exclusive)
+     */
+    void markDirty(int index) {
+        assert index >= 0 && index < size();
+        dirtyPages[index >>> (PAGE_BITS + PAGES_PER_WORD_BITS)] |= 1L << (index >>> PAGE_BITS);
+        dirty = true;
+    }
+
+    /**
+     * Marks all the pages as modified, when the whole data is replaced
+     */
+    void markAllDirty() {
+        for (int i = 0; i < size(); i += PAGE_SIZE)
+            markDirty(i);
+    }
+
+    /**
+     * Copies the pages of given ram modified since the last flush to the file,
+     * and asks the system to write them to the disk in the background. Does
+     * nothing if no page was modified
+     *
+     * @param ram
+     *            ram whose data is saved, of the size of the file
+     * @throws IllegalArgumentException
+     *             if given ram's size isn't the one of the file
+     */
+    void flush(Ram ram) {
+        if (!dirty)
+            return;
+        Preconditions.checkArgument(Objects.requireNonNull(ram).size() == size());
+
+        for (int w = 0; w < dirtyPages.length; ++w) {
+            long pages = dirtyPages[w];
+            dirtyPages[w] = 0;
+            while (pages != 0) {
+                int page = (w << PAGES_PER_WORD_BITS) + Long.numberOfTrailingZeros(pages);
+                pages &= pages - 1;
+                int start = page << PAGE_BITS, end = Math.min(start + PAGE_SIZE, size());
+                for (int i = start; i < end; ++i)
+                    data.put(i, (byte) ram.read(i));
+            }
+        }
+        dirty = false;
+
+        if (forcePending.compareAndSet(false, true))
+            FORCER.execute(() -> {
+                forcePending.set(false);
+                data.force();
+            });
+    }
+}
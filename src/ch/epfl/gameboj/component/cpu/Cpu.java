@@ -5,32 +5,55 @@
 
 package ch.epfl.gameboj.component.cpu;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.Register;
-import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Alu.Flag;
 import ch.epfl.gameboj.component.cpu.Alu.RotDir;
 import ch.epfl.gameboj.component.memory.Ram;
 
-public final class Cpu implements Component, Clocked {
+public final class Cpu implements Component, Clocked, Stateful {
     
     private static final Opcode[] DIRECT_OPCODE_TABLE = buildOpcodeTable(
             Opcode.Kind.DIRECT);
     private static final Opcode[] PREFIXED_OPCODE_TABLE = buildOpcodeTable(
             Opcode.Kind.PREFIXED);
+    private static final OpcodeHandler[] HANDLER_TABLE = buildHandlerTable();
+    private static final Opcode[] ALL_OPCODES = Opcode.values();
+    private static final int[] FLAG_MASKS = buildFlagMasks();
+    private static final int NO_OPERAND = -1;
+    private static final int MAX_IDLE_LOOP_BYTES = 16;
+    private static final int MAX_IDLE_LOOP_CYCLES = 32;
     private static final int INTERRUPT_HANDLING_CYCLES = 5;
     private static final int OPCODE_PREFIX = 0xCB;
+    private static final int STATE_SIZE = 6 * Short.BYTES + 3 + Long.BYTES
+            + AddressMap.HIGH_RAM_SIZE;
 
     
     public enum Interrupt implements Bit {
         VBLANK, LCD_STAT, TIMER, SERIAL, JOYPAD
     }
+
+    /**
+     * Ways of executing opcodes : decoding them at each execution
+     * (INTERPRETER), running the handlers precomputed for every opcode at
+     * class initialization (HANDLER_TABLE), or doing so while also caching
+     * opcodes and operands fetched from ROM, so they are only read from the
+     * bus once (ROM_CACHE)
+     */
+    public enum Engine {
+        INTERPRETER, HANDLER_TABLE, ROM_CACHE
+    }
     
 
     private enum Reg implements Register {
@@ -42,19 +65,77 @@ public final class Cpu implements Component, Clocked {
     private enum FlagSrc {
         V0, V1, ALU, CPU
     }
+
+    @FunctionalInterface
+    private interface OpcodeHandler {
+        /**
+         * Executes the opcode on given cpu
+         * 
+         * @param cpu
+         *            cpu executing the opcode
+         * @param nextPC
+         *            address of the following opcode
+         * @return new value of PC
+         */
+        int execute(Cpu cpu, int nextPC);
+    }
     
     
     private Bus bus;
     private final Ram highRam = new Ram(AddressMap.HIGH_RAM_SIZE);
     
-    private final RegisterFile<Reg> registerFile = new RegisterFile<>(Reg.values());
+    // 8-bit regs, stored by pair (first reg in the 8 msb)
+    private int AF = 0, BC = 0, DE = 0, HL = 0;
     private int SP = 0, PC = 0;
     
     private boolean IME = false;
     private int IE = 0, IF = 0;
 
     private long nextNonIdleCycle;
-    
+    private boolean halted = false;
+
+    private final Engine engine;
+
+    // Opcodes decoded from ROM, valid as long as their epoch is the current one
+    private final int[] decodedRom;
+    private final int[] decodedRomEpochs;
+    private int romEpoch = 1;
+    private int cachedOperand = NO_OPERAND;
+
+    // Idle loop detection : start and state of the iteration of the short
+    // backward loop at loopPC being observed
+    private int loopPC = -1;
+    private long loopStartCycle = -1, loopQuietUntil = -1;
+    private long loopRegs;
+    private int loopSP;
+    private boolean loopIME, loopClean;
+
+    /**
+     * Constructs a Cpu executing opcodes through the precomputed handler table
+     */
+    public Cpu() {
+        this(Engine.HANDLER_TABLE);
+    }
+
+    /**
+     * Constructs a Cpu executing opcodes with given engine
+     * 
+     * @param engine
+     *            engine to use
+     * @throws NullPointerException
+     *             if given engine is null
+     */
+    public Cpu(Engine engine) {
+        this.engine = Objects.requireNonNull(engine);
+
+        if (engine == Engine.ROM_CACHE) {
+            decodedRom = new int[AddressMap.ROM_SIZE];
+            decodedRomEpochs = new int[AddressMap.ROM_SIZE];
+        } else {
+            decodedRom = null;
+            decodedRomEpochs = null;
+        }
+    }
 
     /**
      * Given an interrupt, sets IF corresponding bit to 1
@@ -71,7 +152,8 @@ public final class Cpu implements Component, Clocked {
      */
     @Override
     public void attachTo(Bus bus) {
-        Component.super.attachTo(bus);
+        bus.attach(this, AddressMap.REG_IF, AddressMap.REG_IF + 1);
+        bus.attach(this, AddressMap.HIGH_RAM_START, AddressMap.REG_IE + 1);
         this.bus = bus;
     }
     
@@ -114,22 +196,193 @@ public final class Cpu implements Component, Clocked {
      */
     @Override
     public void cycle(long cycle) {
-        if (nextNonIdleCycle == Long.MAX_VALUE && pendingInterrupt()) {
+        if (halted) {
+            if (!pendingInterrupt())
+                return;
+            halted = false;
             nextNonIdleCycle = cycle;
         } else if (cycle != nextNonIdleCycle) {
             return;
         }
         reallyCycle();
     }
-    
+
+    /*
+     * While halted, the cpu only wakes up when an interrupt is both enabled
+     * and requested. Requests only come from the lcd controller and the timer
+     * on their own events, or from the joypad between two runs, so the
+     * scheduler can jump straight to those.
+     * 
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Clocked#nextEventCycle(long)
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        if (halted)
+            return pendingInterrupt() ? cycle : Long.MAX_VALUE;
+        return nextNonIdleCycle;
+    }
+
+    /**
+     * Tells whether the cpu is halted, waiting for an interrupt
+     * 
+     * @return true iff the cpu executed HALT and hasn't been woken up yet
+     */
+    public boolean isHalted() {
+        return halted;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return STATE_SIZE;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer state) {
+        state.putShort((short) PC).putShort((short) SP).putShort((short) AF)
+                .putShort((short) BC).putShort((short) DE)
+                .putShort((short) HL)
+                .put((byte) ((halted ? 2 : 0) | (IME ? 1 : 0)))
+                .put((byte) IE).put((byte) IF).putLong(nextNonIdleCycle);
+        highRam.saveState(state);
+    }
+
+    /*
+     * Opcodes cached from ROM and the loop being observed belong to the
+     * previous state, so they are forgotten
+     * 
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer state) {
+        PC = Short.toUnsignedInt(state.getShort());
+        SP = Short.toUnsignedInt(state.getShort());
+        AF = Short.toUnsignedInt(state.getShort()) & 0xFFF0;
+        BC = Short.toUnsignedInt(state.getShort());
+        DE = Short.toUnsignedInt(state.getShort());
+        HL = Short.toUnsignedInt(state.getShort());
+        int flags = state.get();
+        IME = Bits.test(flags, 0);
+        halted = Bits.test(flags, 1);
+        IE = Byte.toUnsignedInt(state.get());
+        IF = Byte.toUnsignedInt(state.get());
+        nextNonIdleCycle = state.getLong();
+        highRam.loadState(state);
+
+        if (engine == Engine.ROM_CACHE)
+            invalidateDecodedRom();
+        cachedOperand = NO_OPERAND;
+        loopPC = -1;
+        loopStartCycle = -1;
+    }
+
+    /**
+     * Stops the cpu until an interrupt is both enabled and requested
+     */
+    private void halt() {
+        halted = true;
+        nextNonIdleCycle = Long.MAX_VALUE;
+    }
+
+    /*
+     * Skips whole iterations of a short loop the cpu is spinning in, when it
+     * is known to repeat identically : it wrote nothing, read neither DIV nor
+     * TIMA (which change without the timer having an event), no other
+     * component had an event during the last iteration, and that iteration
+     * ended in the state it started from. Until the horizon, every iteration
+     * then reads the same values and ends in the same state, so only the
+     * cycle count has to move.
+     * 
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Clocked#skipIdleCycles(long, long)
+     */
+    @Override
+    public long skipIdleCycles(long cycle, long horizon) {
+        if (PC == loopPC && cycle == nextNonIdleCycle) {
+            if (isIdleLoop(cycle)) {
+                long period = cycle - loopStartCycle;
+                nextNonIdleCycle += (horizon - cycle) / period * period;
+            }
+            startLoopIteration(horizon);
+        }
+        return nextEventCycle(cycle);
+    }
+
+    /**
+     * Checks whether the loop iteration observed since loopStartCycle, and
+     * ending at given cycle, repeats identically
+     * 
+     * @param cycle
+     *            the cycle at which the iteration ends
+     * @return true iff the cpu is idle-looping
+     */
+    private boolean isIdleLoop(long cycle) {
+        return loopStartCycle >= 0 && loopClean && loopQuietUntil > cycle
+                && cycle - loopStartCycle <= MAX_IDLE_LOOP_CYCLES
+                && packedRegs() == loopRegs && SP == loopSP && IME == loopIME
+                && !(IME && pendingInterrupt());
+    }
+
+    /**
+     * Starts observing a new iteration of the loop at loopPC
+     * 
+     * @param quietUntil
+     *            cycle before which no other component has an event
+     */
+    private void startLoopIteration(long quietUntil) {
+        loopStartCycle = nextNonIdleCycle;
+        loopQuietUntil = quietUntil;
+        loopRegs = packedRegs();
+        loopSP = SP;
+        loopIME = IME;
+        loopClean = true;
+    }
+
+    /**
+     * Packs the values of all 8-bit registers in a long
+     * 
+     * @return AF, BC, DE and HL, packed from msb to lsb
+     */
+    private long packedRegs() {
+        return ((long) AF << 48) | ((long) BC << 32) | ((long) DE << 16) | HL;
+    }
+
     private void reallyCycle() {
         if (IME && pendingInterrupt()) {
             handleInterrupt();
         } else {
-            Opcode opcode = getOpcode();
-            dispatch(opcode);
+            int previousPC = PC;
+            Opcode opcode;
+            switch (engine) {
+            case INTERPRETER:
+                opcode = getOpcode();
+                dispatch(opcode);
+                break;
+            case HANDLER_TABLE:
+                opcode = getOpcode();
+                execute(opcode);
+                break;
+            default:
+                opcode = getCachedOpcode();
+                execute(opcode);
+                cachedOperand = NO_OPERAND;
+                break;
+            }
 
             nextNonIdleCycle += opcode.cycles;
+
+            if (PC < previousPC && previousPC - PC <= MAX_IDLE_LOOP_BYTES
+                    && PC != loopPC) {
+                loopPC = PC;
+                loopStartCycle = -1;
+            }
         }
     }
 
@@ -613,7 +866,7 @@ public final class Cpu implements Component, Clocked {
 
         // Misc control
         case HALT: {
-            nextNonIdleCycle = Long.MAX_VALUE;
+            halt();
         }
             break;
         case STOP:
@@ -625,7 +878,652 @@ public final class Cpu implements Component, Clocked {
         
         PC = Bits.clip(16, nextPC);
     }
-    
+
+    /**
+     * Given an opcode executes corresponding operation, using its precomputed
+     * handler
+     * 
+     * @param opcode
+     *            opcode to execute
+     */
+    private void execute(Opcode opcode) {
+        int nextPC = Bits.clip(16, PC + opcode.totalBytes);
+        PC = Bits.clip(16, HANDLER_TABLE[opcode.ordinal()].execute(this, nextPC));
+    }
+
+    /**
+     * Given an opcode, creates the handler executing it, with all of its
+     * operands (registers, bit indices, conditions, etc.) already decoded
+     * 
+     * @param opcode
+     *            opcode to create a handler for
+     * @return specialized handler for given opcode
+     */
+    private static OpcodeHandler buildHandler(Opcode opcode) {
+        switch (opcode.family) {
+        case NOP:
+            return (cpu, nextPC) -> nextPC;
+        case LD_R8_HLR: {
+            Reg r = extractReg(opcode, 3);
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, cpu.read8AtHl());
+                return nextPC;
+            };
+        }
+        case LD_A_HLRU: {
+            int increment = extractHlIncrement(opcode);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8AtHl());
+                cpu.setReg16(Reg16.HL,
+                        Bits.clip(16, cpu.reg16(Reg16.HL) + increment));
+                return nextPC;
+            };
+        }
+        case LD_A_N8R:
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(
+                        AddressMap.REGS_START + cpu.read8AfterOpcode()));
+                return nextPC;
+            };
+        case LD_A_CR:
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A,
+                        cpu.read8(AddressMap.REGS_START + cpu.reg(Reg.C)));
+                return nextPC;
+            };
+        case LD_A_N16R:
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(cpu.read16AfterOpcode()));
+                return nextPC;
+            };
+        case LD_A_BCR:
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(cpu.reg16(Reg16.BC)));
+                return nextPC;
+            };
+        case LD_A_DER:
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(cpu.reg16(Reg16.DE)));
+                return nextPC;
+            };
+        case LD_R8_N8: {
+            Reg r = extractReg(opcode, 3);
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, cpu.read8AfterOpcode());
+                return nextPC;
+            };
+        }
+        case LD_R16SP_N16: {
+            Reg16 r = extractReg16(opcode);
+            return (cpu, nextPC) -> {
+                cpu.setReg16SP(r, cpu.read16AfterOpcode());
+                return nextPC;
+            };
+        }
+        case POP_R16: {
+            Reg16 r = extractReg16(opcode);
+            return (cpu, nextPC) -> {
+                cpu.setReg16(r, cpu.pop16());
+                return nextPC;
+            };
+        }
+        case LD_HLR_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(cpu.reg(r));
+                return nextPC;
+            };
+        }
+        case LD_HLRU_A: {
+            int increment = extractHlIncrement(opcode);
+            return (cpu, nextPC) -> {
+                cpu.write8(cpu.reg16(Reg16.HL), cpu.reg(Reg.A));
+                cpu.setReg16(Reg16.HL,
+                        Bits.clip(16, cpu.reg16(Reg16.HL) + increment));
+                return nextPC;
+            };
+        }
+        case LD_N8R_A:
+            return (cpu, nextPC) -> {
+                cpu.write8(AddressMap.REGS_START + cpu.read8AfterOpcode(),
+                        cpu.reg(Reg.A));
+                return nextPC;
+            };
+        case LD_CR_A:
+            return (cpu, nextPC) -> {
+                cpu.write8(AddressMap.REGS_START + cpu.reg(Reg.C),
+                        cpu.reg(Reg.A));
+                return nextPC;
+            };
+        case LD_N16R_A:
+            return (cpu, nextPC) -> {
+                cpu.write8(cpu.read16AfterOpcode(), cpu.reg(Reg.A));
+                return nextPC;
+            };
+        case LD_BCR_A:
+            return (cpu, nextPC) -> {
+                cpu.write8(cpu.reg16(Reg16.BC), cpu.reg(Reg.A));
+                return nextPC;
+            };
+        case LD_DER_A:
+            return (cpu, nextPC) -> {
+                cpu.write8(cpu.reg16(Reg16.DE), cpu.reg(Reg.A));
+                return nextPC;
+            };
+        case LD_HLR_N8:
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(cpu.read8AfterOpcode());
+                return nextPC;
+            };
+        case LD_N16R_SP:
+            return (cpu, nextPC) -> {
+                cpu.write16(cpu.read16AfterOpcode(), cpu.SP);
+                return nextPC;
+            };
+        case LD_R8_R8: {
+            Reg r = extractReg(opcode, 3);
+            Reg s = extractReg(opcode, 0);
+            if (r == s)
+                return (cpu, nextPC) -> nextPC;
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, cpu.reg(s));
+                return nextPC;
+            };
+        }
+        case LD_SP_HL:
+            return (cpu, nextPC) -> {
+                cpu.SP = cpu.reg16(Reg16.HL);
+                return nextPC;
+            };
+        case PUSH_R16: {
+            Reg16 r = extractReg16(opcode);
+            return (cpu, nextPC) -> {
+                cpu.push16(cpu.reg16(r));
+                return nextPC;
+            };
+        }
+
+        // Add
+        case ADD_A_R8: {
+            Reg r = extractReg(opcode, 0);
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.add(cpu.reg(Reg.A), cpu.reg(r),
+                        withCarry && cpu.getFlag(Flag.C)));
+                return nextPC;
+            };
+        }
+        case ADD_A_N8: {
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.add(cpu.reg(Reg.A),
+                        cpu.read8AfterOpcode(),
+                        withCarry && cpu.getFlag(Flag.C)));
+                return nextPC;
+            };
+        }
+        case ADD_A_HLR: {
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.add(cpu.reg(Reg.A),
+                        cpu.read8AtHl(), withCarry && cpu.getFlag(Flag.C)));
+                return nextPC;
+            };
+        }
+        case INC_R8: {
+            Reg r = extractReg(opcode, 3);
+            return (cpu, nextPC) -> {
+                int vf = Alu.add(cpu.reg(r), 1);
+                cpu.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.CPU);
+                cpu.setRegFromAlu(r, vf);
+                return nextPC;
+            };
+        }
+        case INC_HLR:
+            return (cpu, nextPC) -> {
+                int vf = Alu.add(cpu.read8AtHl(), 1);
+                cpu.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.CPU);
+                cpu.write8AtHl(Alu.unpackValue(vf));
+                return nextPC;
+            };
+        case INC_R16SP: {
+            Reg16 r = extractReg16(opcode);
+            return (cpu, nextPC) -> {
+                cpu.setReg16SP(r,
+                        Alu.unpackValue(Alu.add16H(cpu.reg16SP(r), 1)));
+                return nextPC;
+            };
+        }
+        case ADD_HL_R16SP: {
+            Reg16 r = extractReg16(opcode);
+            return (cpu, nextPC) -> {
+                int vf = Alu.add16H(cpu.reg16(Reg16.HL), cpu.reg16SP(r));
+                cpu.combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.ALU);
+                cpu.setReg16(Reg16.HL, Alu.unpackValue(vf));
+                return nextPC;
+            };
+        }
+        case LD_HLSP_S8: {
+            if (Bits.test(opcode.encoding, 4))
+                return (cpu, nextPC) -> {
+                    cpu.setReg16(Reg16.HL, cpu.addSP_e8());
+                    return nextPC;
+                };
+            return (cpu, nextPC) -> {
+                cpu.SP = cpu.addSP_e8();
+                return nextPC;
+            };
+        }
+
+        // Subtract
+        case SUB_A_R8: {
+            Reg r = extractReg(opcode, 0);
+            boolean withBorrow = Bits.test(opcode.encoding, 3);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.sub(cpu.reg(Reg.A), cpu.reg(r),
+                        withBorrow && cpu.getFlag(Flag.C)));
+                return nextPC;
+            };
+        }
+        case SUB_A_N8: {
+            boolean withBorrow = Bits.test(opcode.encoding, 3);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.sub(cpu.reg(Reg.A),
+                        cpu.read8AfterOpcode(),
+                        withBorrow && cpu.getFlag(Flag.C)));
+                return nextPC;
+            };
+        }
+        case SUB_A_HLR: {
+            boolean withBorrow = Bits.test(opcode.encoding, 3);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.sub(cpu.reg(Reg.A),
+                        cpu.read8AtHl(), withBorrow && cpu.getFlag(Flag.C)));
+                return nextPC;
+            };
+        }
+        case DEC_R8: {
+            Reg r = extractReg(opcode, 3);
+            return (cpu, nextPC) -> {
+                int vf = Alu.sub(cpu.reg(r), 1);
+                cpu.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU,
+                        FlagSrc.CPU);
+                cpu.setRegFromAlu(r, vf);
+                return nextPC;
+            };
+        }
+        case DEC_HLR:
+            return (cpu, nextPC) -> {
+                int vf = Alu.sub(cpu.read8AtHl(), 1);
+                cpu.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU,
+                        FlagSrc.CPU);
+                cpu.write8AtHl(Alu.unpackValue(vf));
+                return nextPC;
+            };
+        case CP_A_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.setFlags(Alu.sub(cpu.reg(Reg.A), cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case CP_A_N8:
+            return (cpu, nextPC) -> {
+                cpu.setFlags(Alu.sub(cpu.reg(Reg.A), cpu.read8AfterOpcode()));
+                return nextPC;
+            };
+        case CP_A_HLR:
+            return (cpu, nextPC) -> {
+                cpu.setFlags(Alu.sub(cpu.reg(Reg.A), cpu.read8AtHl()));
+                return nextPC;
+            };
+        case DEC_R16SP: {
+            Reg16 r = extractReg16(opcode);
+            return (cpu, nextPC) -> {
+                cpu.setReg16SP(r, Bits.clip(16, cpu.reg16SP(r) - 1));
+                return nextPC;
+            };
+        }
+
+        // And, or, xor, complement
+        case AND_A_N8:
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A,
+                        Alu.and(cpu.reg(Reg.A), cpu.read8AfterOpcode()));
+                return nextPC;
+            };
+        case AND_A_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.and(cpu.reg(Reg.A), cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case AND_A_HLR:
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A,
+                        Alu.and(cpu.reg(Reg.A), cpu.read8AtHl()));
+                return nextPC;
+            };
+        case OR_A_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.or(cpu.reg(Reg.A), cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case OR_A_N8:
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A,
+                        Alu.or(cpu.reg(Reg.A), cpu.read8AfterOpcode()));
+                return nextPC;
+            };
+        case OR_A_HLR:
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A,
+                        Alu.or(cpu.reg(Reg.A), cpu.read8AtHl()));
+                return nextPC;
+            };
+        case XOR_A_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A, Alu.xor(cpu.reg(Reg.A), cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case XOR_A_N8:
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A,
+                        Alu.xor(cpu.reg(Reg.A), cpu.read8AfterOpcode()));
+                return nextPC;
+            };
+        case XOR_A_HLR:
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(Reg.A,
+                        Alu.xor(cpu.reg(Reg.A), cpu.read8AtHl()));
+                return nextPC;
+            };
+        case CPL:
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, Bits.complement8(cpu.reg(Reg.A)));
+                cpu.combineAluFlags(0, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1,
+                        FlagSrc.CPU);
+                return nextPC;
+            };
+
+        // Rotate, shift
+        case ROTCA: {
+            RotDir dir = extractRotDir(opcode);
+            return (cpu, nextPC) -> {
+                int vf = Alu.rotate(dir, cpu.reg(Reg.A));
+                cpu.setRegFromAlu(Reg.A, vf);
+                cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
+                        FlagSrc.ALU);
+                return nextPC;
+            };
+        }
+        case ROTA: {
+            RotDir dir = extractRotDir(opcode);
+            return (cpu, nextPC) -> {
+                int vf = Alu.rotate(dir, cpu.reg(Reg.A), cpu.getFlag(Flag.C));
+                cpu.setRegFromAlu(Reg.A, vf);
+                cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
+                        FlagSrc.ALU);
+                return nextPC;
+            };
+        }
+        case ROTC_R8: {
+            Reg r = extractReg(opcode, 0);
+            RotDir dir = extractRotDir(opcode);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.rotate(dir, cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case ROT_R8: {
+            Reg r = extractReg(opcode, 0);
+            RotDir dir = extractRotDir(opcode);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r,
+                        Alu.rotate(dir, cpu.reg(r), cpu.getFlag(Flag.C)));
+                return nextPC;
+            };
+        }
+        case ROTC_HLR: {
+            RotDir dir = extractRotDir(opcode);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.rotate(dir, cpu.read8AtHl()));
+                return nextPC;
+            };
+        }
+        case ROT_HLR: {
+            RotDir dir = extractRotDir(opcode);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.rotate(dir, cpu.read8AtHl(),
+                        cpu.getFlag(Flag.C)));
+                return nextPC;
+            };
+        }
+        case SWAP_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.swap(cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case SWAP_HLR:
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.swap(cpu.read8AtHl()));
+                return nextPC;
+            };
+        case SLA_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.shiftLeft(cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case SRA_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.shiftRightA(cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case SRL_R8: {
+            Reg r = extractReg(opcode, 0);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.shiftRightL(cpu.reg(r)));
+                return nextPC;
+            };
+        }
+        case SLA_HLR:
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.shiftLeft(cpu.read8AtHl()));
+                return nextPC;
+            };
+        case SRA_HLR:
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.shiftRightA(cpu.read8AtHl()));
+                return nextPC;
+            };
+        case SRL_HLR:
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.shiftRightL(cpu.read8AtHl()));
+                return nextPC;
+            };
+
+        // Bit test and set
+        case BIT_U3_R8: {
+            Reg r = extractReg(opcode, 0);
+            int bit = extractBitIndex(opcode);
+            return (cpu, nextPC) -> {
+                cpu.combineAluFlags(Alu.testBit(cpu.reg(r), bit), FlagSrc.ALU,
+                        FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
+                return nextPC;
+            };
+        }
+        case BIT_U3_HLR: {
+            int bit = extractBitIndex(opcode);
+            return (cpu, nextPC) -> {
+                cpu.combineAluFlags(Alu.testBit(cpu.read8AtHl(), bit),
+                        FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
+                return nextPC;
+            };
+        }
+        case CHG_U3_R8: {
+            Reg r = extractReg(opcode, 0);
+            int bit = extractBitIndex(opcode);
+            boolean value = extractBitValue(opcode);
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, Bits.set(cpu.reg(r), bit, value));
+                return nextPC;
+            };
+        }
+        case CHG_U3_HLR: {
+            int bit = extractBitIndex(opcode);
+            boolean value = extractBitValue(opcode);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(Bits.set(cpu.read8AtHl(), bit, value));
+                return nextPC;
+            };
+        }
+
+        // Misc. ALU
+        case DAA:
+            return (cpu, nextPC) -> {
+                int vf = Alu.bcdAdjust(cpu.reg(Reg.A), cpu.getFlag(Flag.N),
+                        cpu.getFlag(Flag.H), cpu.getFlag(Flag.C));
+                cpu.setRegFromAlu(Reg.A, vf);
+                cpu.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0,
+                        FlagSrc.ALU);
+                return nextPC;
+            };
+        case SCCF: {
+            boolean complement = Bits.test(opcode.encoding, 3);
+            return (cpu, nextPC) -> {
+                FlagSrc c = complement && cpu.getFlag(Flag.C) ? FlagSrc.V0
+                        : FlagSrc.V1;
+                cpu.combineAluFlags(0, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, c);
+                return nextPC;
+            };
+        }
+
+        // Jumps
+        case JP_HL:
+            return (cpu, nextPC) -> cpu.reg16(Reg16.HL);
+        case JP_N16:
+            return (cpu, nextPC) -> cpu.read16AfterOpcode();
+        case JP_CC_N16: {
+            Flag flag = extractConditionFlag(opcode);
+            boolean expected = extractConditionValue(opcode);
+            int extraCycles = opcode.additionalCycles;
+            return (cpu, nextPC) -> {
+                if (cpu.getFlag(flag) != expected)
+                    return nextPC;
+                cpu.nextNonIdleCycle += extraCycles;
+                return cpu.read16AfterOpcode();
+            };
+        }
+        case JR_E8:
+            return (cpu, nextPC) -> cpu.add16_E8(nextPC);
+        case JR_CC_E8: {
+            Flag flag = extractConditionFlag(opcode);
+            boolean expected = extractConditionValue(opcode);
+            int extraCycles = opcode.additionalCycles;
+            return (cpu, nextPC) -> {
+                if (cpu.getFlag(flag) != expected)
+                    return nextPC;
+                cpu.nextNonIdleCycle += extraCycles;
+                return cpu.add16_E8(nextPC);
+            };
+        }
+
+        // Calls and returns
+        case CALL_N16:
+            return (cpu, nextPC) -> {
+                cpu.push16(nextPC);
+                return cpu.read16AfterOpcode();
+            };
+        case CALL_CC_N16: {
+            Flag flag = extractConditionFlag(opcode);
+            boolean expected = extractConditionValue(opcode);
+            int extraCycles = opcode.additionalCycles;
+            return (cpu, nextPC) -> {
+                if (cpu.getFlag(flag) != expected)
+                    return nextPC;
+                cpu.push16(nextPC);
+                cpu.nextNonIdleCycle += extraCycles;
+                return cpu.read16AfterOpcode();
+            };
+        }
+        case RST_U3: {
+            int target = AddressMap.RESETS[extractBitIndex(opcode)];
+            return (cpu, nextPC) -> {
+                cpu.push16(nextPC);
+                return target;
+            };
+        }
+        case RET:
+            return (cpu, nextPC) -> cpu.pop16();
+        case RET_CC: {
+            Flag flag = extractConditionFlag(opcode);
+            boolean expected = extractConditionValue(opcode);
+            int extraCycles = opcode.additionalCycles;
+            return (cpu, nextPC) -> {
+                if (cpu.getFlag(flag) != expected)
+                    return nextPC;
+                cpu.nextNonIdleCycle += extraCycles;
+                return cpu.pop16();
+            };
+        }
+
+        // Interrupts
+        case EDI: {
+            boolean ime = Bits.test(opcode.encoding, 3);
+            return (cpu, nextPC) -> {
+                cpu.IME = ime;
+                return nextPC;
+            };
+        }
+        case RETI:
+            return (cpu, nextPC) -> {
+                cpu.IME = true;
+                return cpu.pop16();
+            };
+
+        // Misc control
+        case HALT:
+            return (cpu, nextPC) -> {
+                cpu.halt();
+                return nextPC;
+            };
+        case STOP:
+            return (cpu, nextPC) -> {
+                throw new Error("STOP is not implemented");
+            };
+
+        default:
+            throw new IllegalArgumentException("Unknown opcode family");
+        }
+    }
+
+    /**
+     * Creates the table of handlers of all opcodes, indexed by opcode ordinal
+     * 
+     * @return table of handlers
+     */
+    private static OpcodeHandler[] buildHandlerTable() {
+        Opcode[] opcodes = Opcode.values();
+        OpcodeHandler[] table = new OpcodeHandler[opcodes.length];
+        for (Opcode o : opcodes)
+            table[o.ordinal()] = buildHandler(o);
+        return table;
+    }
+
     
     /**
      * Given an Opcode.Kind, creates table of corresponding opcodes indexed by
@@ -658,6 +1556,46 @@ public final class Cpu implements Component, Clocked {
         }
         return DIRECT_OPCODE_TABLE[op];
     }
+
+    /**
+     * Same as getOpcode, but opcodes lying entirely in ROM are only read from
+     * the bus the first time they are executed. Their immediate operand is
+     * cached along with them, and made available to read8AfterOpcode and
+     * read16AfterOpcode
+     * 
+     * @return Opcode at PC
+     */
+    private Opcode getCachedOpcode() {
+        if (PC < AddressMap.ROM_END && decodedRomEpochs[PC] == romEpoch) {
+            int entry = decodedRom[PC];
+            cachedOperand = Bits.clip(16, entry);
+            return ALL_OPCODES[entry >>> 16];
+        }
+
+        Opcode opcode = getOpcode();
+        if (PC + opcode.totalBytes <= AddressMap.ROM_END) {
+            int operand = 0;
+            if (opcode.kind == Opcode.Kind.DIRECT && opcode.totalBytes == 2)
+                operand = read8(PC + 1);
+            else if (opcode.kind == Opcode.Kind.DIRECT && opcode.totalBytes == 3)
+                operand = read16(PC + 1);
+
+            decodedRom[PC] = (opcode.ordinal() << 16) | operand;
+            decodedRomEpochs[PC] = romEpoch;
+        }
+        return opcode;
+    }
+
+    /**
+     * Invalidates all opcodes cached from ROM, as what is mapped there may
+     * have changed (bank switch, boot ROM disabled, self-modifying code)
+     */
+    private void invalidateDecodedRom() {
+        if (++romEpoch == 0) {
+            Arrays.fill(decodedRomEpochs, 0);
+            romEpoch = 1;
+        }
+    }
     
     /**
      * Reads 8-bit value at given address from bus
@@ -667,6 +1605,11 @@ public final class Cpu implements Component, Clocked {
      * @return value at BUS[address]
      */
     private int read8(int address) {
+        // The timer and the oam, during a dma transfer, change without events
+        if ((address >= AddressMap.REG_DIV && address <= AddressMap.REG_TIMA)
+                || (address >= AddressMap.OAM_START
+                        && address < AddressMap.OAM_END))
+            loopClean = false;
         return bus.read(address);
     }
 
@@ -686,6 +1629,8 @@ public final class Cpu implements Component, Clocked {
      */
     private int read8AfterOpcode() {
         assert PC != 0xFFFF;
+        if (cachedOperand != NO_OPERAND)
+            return Bits.clip(8, cachedOperand);
         return read8(PC + 1);
     }
 
@@ -714,6 +1659,8 @@ public final class Cpu implements Component, Clocked {
     private int read16AfterOpcode() {
         assert PC != 0xFFFE;
         assert PC != 0xFFFF;
+        if (cachedOperand != NO_OPERAND)
+            return cachedOperand;
         return read16(PC + 1);
     }
 
@@ -727,7 +1674,11 @@ public final class Cpu implements Component, Clocked {
      * @see Bus#write(int, int)
      */
     private void write8(int address, int v) {
+        loopClean = false;
         bus.write(address, v);
+        if (decodedRom != null && (address < AddressMap.ROM_END
+                || address == AddressMap.REG_BOOT_ROM_DISABLE))
+            invalidateDecodedRom();
     }
 
     /**
@@ -830,7 +1781,26 @@ public final class Cpu implements Component, Clocked {
      * @return value stored in register
      */
     private int reg(Reg r) {
-        return registerFile.get(r);
+        switch (r) {
+        case A:
+            return AF >>> 8;
+        case F:
+            return AF & 0xFF;
+        case B:
+            return BC >>> 8;
+        case C:
+            return BC & 0xFF;
+        case D:
+            return DE >>> 8;
+        case E:
+            return DE & 0xFF;
+        case H:
+            return HL >>> 8;
+        case L:
+            return HL & 0xFF;
+        default:
+            throw new IllegalArgumentException("Unknown reg");
+        }
     }
 
     /**
@@ -842,27 +1812,18 @@ public final class Cpu implements Component, Clocked {
      * @return value stored in given 16-bit reg
      */
     private int reg16(Reg16 r) {
-        int highB = 0, lowB = 0;
-
         switch (r) {
         case AF:
-            highB = reg(Reg.A);
-            lowB = reg(Reg.F);
-            break;
+            return AF;
         case BC:
-            highB = reg(Reg.B);
-            lowB = reg(Reg.C);
-            break;
+            return BC;
         case DE:
-            highB = reg(Reg.D);
-            lowB = reg(Reg.E);
-            break;
+            return DE;
         case HL:
-            highB = reg(Reg.H);
-            lowB = reg(Reg.L);
-            break;
+            return HL;
+        default:
+            throw new IllegalArgumentException("Unknown reg16");
         }
-        return Bits.make16(highB, lowB);
     }
 
     /**
@@ -887,10 +1848,37 @@ public final class Cpu implements Component, Clocked {
      * @param r
      *            register in which to put value
      * @param newV
-     *            new value to store
+     *            new value to store, must be an 8-bit value
      */
     private void setReg(Reg r, int newV) {
-        registerFile.set(r, newV);
+        assert (newV & ~0xFF) == 0;
+
+        switch (r) {
+        case A:
+            AF = (newV << 8) | (AF & 0xFF);
+            break;
+        case F:
+            AF = (AF & 0xFF00) | newV;
+            break;
+        case B:
+            BC = (newV << 8) | (BC & 0xFF);
+            break;
+        case C:
+            BC = (BC & 0xFF00) | newV;
+            break;
+        case D:
+            DE = (newV << 8) | (DE & 0xFF);
+            break;
+        case E:
+            DE = (DE & 0xFF00) | newV;
+            break;
+        case H:
+            HL = (newV << 8) | (HL & 0xFF);
+            break;
+        case L:
+            HL = (HL & 0xFF00) | newV;
+            break;
+        }
     }
 
     /**
@@ -906,28 +1894,20 @@ public final class Cpu implements Component, Clocked {
      */
     private void setReg16(Reg16 r, int newV) {
         Preconditions.checkBits16(newV);
-        
-        int highB = Bits.extract(newV, 8, 8);
-        int lowB = Bits.clip(8, newV);
-        
+
         switch (r) {
         case AF:
-            setReg(Reg.A, highB);
-            int mask_4to7 = 0b1111_0000;
-            setReg(Reg.F, lowB & mask_4to7);
-            // takes only 4 msb of lowB (ie. the flags, rest is 0)
+            // takes only 4 msb of F (ie. the flags, rest is 0)
+            AF = newV & 0xFFF0;
             break;
         case BC:
-            setReg(Reg.B, highB);
-            setReg(Reg.C, lowB);
+            BC = newV;
             break;
         case DE:
-            setReg(Reg.D, highB);
-            setReg(Reg.E, lowB);
+            DE = newV;
             break;
         case HL:
-            setReg(Reg.H, highB);
-            setReg(Reg.L, lowB);
+            HL = newV;
             break;
         }
     }
@@ -973,7 +1953,7 @@ public final class Cpu implements Component, Clocked {
      *            packed value and flags
      */
     private void setFlags(int valueFlags) {
-        setReg(Reg.F, Alu.unpackFlags(valueFlags));
+        AF = (AF & 0xFF00) | Alu.unpackFlags(valueFlags);
     }
     
     /**
@@ -998,34 +1978,7 @@ public final class Cpu implements Component, Clocked {
      * @return flag value as boolean (true for 1, false for 0)
      */
     private boolean getFlag(Flag f) {
-        return Bits.test(reg(Reg.F), f.index());
-    }
-
-    /**
-     * Computes new flag value given: an int of packed value/flags, a flag source (V0,
-     * V1, ALU, CPU), and the desired flag
-     * 
-     * @param vf
-     *            packed value and flags
-     * @param flagSrc
-     *            source of flag amongst V0, V1, ALU, CPU
-     * @param flag
-     *            flag for which a new value needs to be computed
-     * @return new flag value as boolean (true for 1, false for 0)
-     */
-    private boolean flagValue(int vf, FlagSrc flagSrc, Flag flag) {
-        switch (flagSrc) {
-        case V0:
-            return false;
-        case V1:
-            return true;
-        case ALU:
-            return Bits.test(vf, flag.index());
-        case CPU:
-            return Bits.test(reg(Reg.F), flag.index());
-        default:
-            throw new IllegalArgumentException("Unknown FlagSrc");
-        }
+        return Bits.test(AF, f.index());
     }
 
     /**
@@ -1046,14 +1999,71 @@ public final class Cpu implements Component, Clocked {
      */
     private void combineAluFlags(int vf, FlagSrc z, FlagSrc n, FlagSrc h,
             FlagSrc c) {
-        boolean newZ, newN, newH, newC;
+        int masks = FLAG_MASKS[flagSourcesIndex(z, n, h, c)];
 
-        newZ = flagValue(vf, z, Flag.Z);
-        newN = flagValue(vf, n, Flag.N);
-        newH = flagValue(vf, h, Flag.H);
-        newC = flagValue(vf, c, Flag.C);
+        int aluMask = Bits.clip(8, masks);
+        int cpuMask = Bits.extract(masks, 8, 8);
+        int v1Mask = masks >>> 16;
 
-        setReg(Reg.F, Alu.maskZNHC(newZ, newN, newH, newC));
+        AF = (AF & 0xFF00) | (vf & aluMask) | (AF & cpuMask) | v1Mask;
+    }
+
+    /**
+     * Computes index of given combination of flag sources in FLAG_MASKS
+     * 
+     * @param z
+     *            flag Z source
+     * @param n
+     *            flag N source
+     * @param h
+     *            flag H source
+     * @param c
+     *            flag C source
+     * @return index of the combination
+     */
+    private static int flagSourcesIndex(FlagSrc z, FlagSrc n, FlagSrc h,
+            FlagSrc c) {
+        return (z.ordinal() << 6) | (n.ordinal() << 4) | (h.ordinal() << 2)
+                | c.ordinal();
+    }
+
+    /**
+     * Computes, for every combination of flag sources, the masks of flags
+     * taken from the Alu (bits 0 to 7), kept from the Cpu (bits 8 to 15) and
+     * set to 1 (bits 16 to 23). Flags in none of them are set to 0
+     * 
+     * @return table of masks, indexed by flagSourcesIndex
+     */
+    private static int[] buildFlagMasks() {
+        FlagSrc[] srcs = FlagSrc.values();
+        Flag[] flags = { Flag.Z, Flag.N, Flag.H, Flag.C };
+        int[] table = new int[1 << (2 * flags.length)];
+
+        for (FlagSrc z : srcs)
+            for (FlagSrc n : srcs)
+                for (FlagSrc h : srcs)
+                    for (FlagSrc c : srcs) {
+                        FlagSrc[] sources = { z, n, h, c };
+                        int masks = 0;
+                        for (int i = 0; i < flags.length; ++i) {
+                            int bit = flags[i].mask();
+                            switch (sources[i]) {
+                            case ALU:
+                                masks |= bit;
+                                break;
+                            case CPU:
+                                masks |= bit << 8;
+                                break;
+                            case V1:
+                                masks |= bit << 16;
+                                break;
+                            case V0:
+                                break;
+                            }
+                        }
+                        table[flagSourcesIndex(z, n, h, c)] = masks;
+                    }
+        return table;
     }
 
     /**
@@ -1065,7 +2075,7 @@ public final class Cpu implements Component, Clocked {
      *            index from which to extract reg id
      * @return Reg reg identity
      */
-    private Reg extractReg(Opcode opcode, int startBit) {
+    private static Reg extractReg(Opcode opcode, int startBit) {
         int regCode = Bits.extract(opcode.encoding, startBit, 3);
         switch (regCode) {
         case 0b000:
@@ -1095,7 +2105,7 @@ public final class Cpu implements Component, Clocked {
      *            opcode in which reg is encoded
      * @return Reg value
      */
-    private Reg16 extractReg16(Opcode opcode) {
+    private static Reg16 extractReg16(Opcode opcode) {
         int regsCode = Bits.extract(opcode.encoding, 4, 2);
         switch (regsCode) {
         case 0b00:
@@ -1118,7 +2128,7 @@ public final class Cpu implements Component, Clocked {
      *            opcode in which HL increment is encoded
      * @return HL increment, -1 or +1
      */
-    private int extractHlIncrement(Opcode opcode) {
+    private static int extractHlIncrement(Opcode opcode) {
         return Bits.test(opcode.encoding, 4) ? -1 : 1;
     }
 
@@ -1129,7 +2139,7 @@ public final class Cpu implements Component, Clocked {
      *            opcode in which rotation direction is encoded
      * @return
      */
-    private RotDir extractRotDir(Opcode opcode) {
+    private static RotDir extractRotDir(Opcode opcode) {
         return Bits.test(opcode.encoding, 3) ? RotDir.RIGHT : RotDir.LEFT;
     }
 
@@ -1140,7 +2150,7 @@ public final class Cpu implements Component, Clocked {
      *            opcode in which bit index is encoded
      * @return index of bit
      */
-    private int extractBitIndex(Opcode opcode) {
+    private static int extractBitIndex(Opcode opcode) {
         return Bits.extract(opcode.encoding, 3, 3);
     }
 
@@ -1151,7 +2161,7 @@ public final class Cpu implements Component, Clocked {
      *            opcode in which new bit value is encoded
      * @return value of bit
      */
-    private boolean extractBitValue(Opcode opcode) {
+    private static boolean extractBitValue(Opcode opcode) {
         return Bits.test(opcode.encoding, 6);
     }
 
@@ -1189,6 +2199,29 @@ public final class Cpu implements Component, Clocked {
         return !(Bits.test(opcode.encoding, 3) && getFlag(Flag.C));
     }
 
+    /**
+     * Extracts from given opcode encoding the flag its condition tests
+     * 
+     * @param opcode
+     *            opcode in which condition is encoded
+     * @return flag tested by the condition (Z or C)
+     */
+    private static Flag extractConditionFlag(Opcode opcode) {
+        return Bits.test(opcode.encoding, 4) ? Flag.C : Flag.Z;
+    }
+
+    /**
+     * Extracts from given opcode encoding the flag value for which its
+     * condition is true
+     * 
+     * @param opcode
+     *            opcode in which condition is encoded
+     * @return true for conditions z and c, false for nz and nc
+     */
+    private static boolean extractConditionValue(Opcode opcode) {
+        return Bits.test(opcode.encoding, 3);
+    }
+
     /**
      * Extracts condition from given opcode encoding, evaluates it and returns
      * its value
@@ -1224,17 +2257,32 @@ public final class Cpu implements Component, Clocked {
      * @return array of all register values
      */
     public int[] _testGetPcSpAFBCDEHL() {
-        int[] array = {
-                PC,
-                SP,
-                reg(Reg.A),
-                reg(Reg.F),
-                reg(Reg.B),
-                reg(Reg.C),
-                reg(Reg.D),
-                reg(Reg.E),
-                reg(Reg.H),
-                reg(Reg.L) };
-        return array;
+        return _testGetPcSpAFBCDEHL(new int[10]);
+    }
+
+    /**
+     * Same as _testGetPcSpAFBCDEHL(), but fills given array instead of
+     * allocating a new one, so it can be called at every instruction
+     * 
+     * @param state
+     *            array of (at least) 10 elements to fill
+     * @return given array, filled with all register values
+     * @throws IndexOutOfBoundsException
+     *             if given array has less than 10 elements
+     */
+    public int[] _testGetPcSpAFBCDEHL(int[] state) {
+        Objects.checkIndex(9, state.length);
+
+        state[0] = PC;
+        state[1] = SP;
+        state[2] = AF >>> 8;
+        state[3] = AF & 0xFF;
+        state[4] = BC >>> 8;
+        state[5] = BC & 0xFF;
+        state[6] = DE >>> 8;
+        state[7] = DE & 0xFF;
+        state[8] = HL >>> 8;
+        state[9] = HL & 0xFF;
+        return state;
     }
 }
\ No newline at end of file
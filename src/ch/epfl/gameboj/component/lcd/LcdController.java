@@ -5,7 +5,7 @@
 
 package ch.epfl.gameboj.component.lcd;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
@@ -14,14 +14,14 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.Register;
 import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
-import ch.epfl.gameboj.bits.BitVector;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.memory.Ram;
 
-public final class LcdController implements Component, Clocked {
+public final class LcdController implements Component, Clocked, Stateful {
 
     public static final int LCD_WIDTH = 160, LCD_HEIGHT = 144;
 
@@ -37,20 +37,19 @@ public final class LcdController implements Component, Clocked {
             SPRITE_Y_CORRECTION = 16,
             TILE_INDEX_CORRECTION = 0x80;
 
-    private static final int LINE_CYCLES = 114,
-            TOTAL_DMA_CYCLES = 160;
+    private static final int LINE_CYCLES = 114;
 
     private static final int V_BLANK_LINES = 10;
 
+    /** Number of cycles of an lcd frame, v-blank included */
+    public static final int FRAME_CYCLES = (LCD_HEIGHT + V_BLANK_LINES)
+            * LINE_CYCLES;
+
     private static final int H_BLANK_CYCLES = 51,
             MODE_2_CYCLES = 20,
             MODE_3_CYCLES = 43;
 
-    private static final int TOTAL_SPRITES = 40,
-            MAX_SPRITES_PER_LINE = 10;
-
     private final LcdImage BLANK_IMAGE = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT).build();
-    private final LcdImageLine BLANK_LINE = new LcdImageLine.Builder(LCD_WIDTH).build();
 
     private enum Reg implements Register {
         LCDC, STAT, SCY, SCX, LY, LYC, DMA, BGP, OBP0, OBP1, WY, WX
@@ -76,22 +75,47 @@ public final class LcdController implements Component, Clocked {
     private final RegisterFile<Reg> registerFile;
     private final Ram vRam;
     private final Ram oam;
+    private final TileCache tiles;
+    private final SpriteIndex sprites;
     private Bus bus;
 
     private LcdImage currentImage;
     private LcdImage.Builder nextImageBuilder;
 
     private long nextNonIdleCycle;
-    private int remainingDMACycles;
+    // Last cycle at which the controller was clocked, the one at which the
+    // cpu accesses the bus, as the controller is clocked before it
+    private long lastCycle = 0;
+
+    // Dma transfer : cycle at which it started, number of bytes copied to the
+    // oam so far (all of them once it is over), and buffer they are read in
+    private long dmaStartCycle = 0;
+    private int dmaCopied = AddressMap.OAM_RAM_SIZE;
+    private final byte[] dmaBytes = new byte[AddressMap.OAM_RAM_SIZE];
 
     private int winY;
 
+    // Frames which aren't rendered keep their timing and interrupts, only
+    // their lines aren't computed
+    private int frameSkip = 0, skippedFrames = 0;
+    private boolean frameRequested = false, renderingFrame = true;
+
+    // Scratch lines in which lines are composed, reused from line to line
+    private final ScratchLine areaLine = new ScratchLine(IMAGE_SIZE),
+            composedLine = new ScratchLine(LCD_WIDTH),
+            windowLine = new ScratchLine(LCD_WIDTH),
+            spriteLine = new ScratchLine(LCD_WIDTH),
+            bgSpritesLine = new ScratchLine(LCD_WIDTH),
+            fgSpritesLine = new ScratchLine(LCD_WIDTH);
+
     public LcdController(Cpu cpu) {
         this.cpu = Objects.requireNonNull(cpu);
 
         registerFile = new RegisterFile<>(Reg.values());
         vRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
         oam = new Ram(AddressMap.OAM_RAM_SIZE);
+        tiles = new TileCache(vRam);
+        sprites = new SpriteIndex(oam, LCD_HEIGHT);
 
         nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
         currentImage = BLANK_IMAGE;
@@ -108,15 +132,9 @@ public final class LcdController implements Component, Clocked {
      */
     @Override
     public void cycle(long cycle) {
-
-        // Direct Memory Access handling
-        if (remainingDMACycles > 0) {
-            int index = TOTAL_DMA_CYCLES - remainingDMACycles;
-            write(AddressMap.OAM_START + index,
-                    bus.read((reg(Reg.DMA) << 8) + index));
-
-            remainingDMACycles--;
-        }
+        lastCycle = cycle;
+        if (cycle >= dmaEndCycle())
+            continueTransferToOam();
 
         // Starts drawing again if screen has been turned on
         if (nextNonIdleCycle == Long.MAX_VALUE && screenIsOn())
@@ -127,6 +145,18 @@ public final class LcdController implements Component, Clocked {
         reallyCycle();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Clocked#nextEventCycle(long)
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        if (nextNonIdleCycle == Long.MAX_VALUE && screenIsOn())
+            return cycle;
+        return Math.min(nextNonIdleCycle, Math.max(cycle, dmaEndCycle()));
+    }
+
     /**
      * Changes mode, potentially requests adequate interrupts and updates
      * nextNonIdleCycle value accordingly
@@ -144,7 +174,8 @@ public final class LcdController implements Component, Clocked {
                 setMode(LcdMode.V_BLANK);
                 nextNonIdleCycle += LINE_CYCLES;
                 cpu.requestInterrupt(Cpu.Interrupt.VBLANK);
-                currentImage = nextImageBuilder.build();
+                if (renderingFrame)
+                    currentImage = nextImageBuilder.build();
             }
             incLY();
             break;
@@ -153,7 +184,7 @@ public final class LcdController implements Component, Clocked {
             if (reg(Reg.LY) == LCD_HEIGHT + V_BLANK_LINES - 1) {
                 setMode(LcdMode.MODE_2);
                 nextNonIdleCycle += MODE_2_CYCLES;
-                nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+                startFrame();
                 winY = 0;
             } else
                 nextNonIdleCycle += LINE_CYCLES;
@@ -168,7 +199,11 @@ public final class LcdController implements Component, Clocked {
         case MODE_3:
             setMode(LcdMode.H_BLANK);
             nextNonIdleCycle += H_BLANK_CYCLES;
-            nextImageBuilder.setLine(reg(Reg.LY), computeLine(reg(Reg.LY)));
+            if (renderingFrame) {
+                continueTransferToOam();
+                nextImageBuilder.setLine(reg(Reg.LY), computeLine(reg(Reg.LY)));
+            } else if (windowOnLine())
+                winY++;
             break;
         }
 
@@ -193,8 +228,10 @@ public final class LcdController implements Component, Clocked {
             return vRam.read(address - AddressMap.VIDEO_RAM_START);
 
         else if (address >= AddressMap.OAM_START
-                && address < AddressMap.OAM_END)
+                && address < AddressMap.OAM_END) {
+            continueTransferToOam();
             return oam.read(address - AddressMap.OAM_START);
+        }
 
         return NO_DATA;
     }
@@ -227,22 +264,30 @@ public final class LcdController implements Component, Clocked {
             }
 
             else {
+                // The previous transfer is caught up from its own page
+                if (address == AddressMap.REG_DMA)
+                    continueTransferToOam();
                 setRegAt(address, data);
 
                 if (address == AddressMap.REG_LYC)
                     updateLYC_EQ_LY();
                 else if (address == AddressMap.REG_DMA)
-                    remainingDMACycles = TOTAL_DMA_CYCLES;
+                    startTransferToOam();
             }
         }
 
         else if (address >= AddressMap.VIDEO_RAM_START
-                && address < AddressMap.VIDEO_RAM_END)
+                && address < AddressMap.VIDEO_RAM_END) {
             vRam.write(address - AddressMap.VIDEO_RAM_START, data);
+            tiles.update(address - AddressMap.VIDEO_RAM_START);
+        }
 
         else if (address >= AddressMap.OAM_START
-                && address < AddressMap.OAM_END)
+                && address < AddressMap.OAM_END) {
+            continueTransferToOam();
             oam.write(address - AddressMap.OAM_START, data);
+            sprites.update(address - AddressMap.OAM_START);
+        }
     }
 
     /*
@@ -252,10 +297,61 @@ public final class LcdController implements Component, Clocked {
      */
     @Override
     public void attachTo(Bus bus) {
-        Component.super.attachTo(bus);
+        bus.attach(this, AddressMap.VIDEO_RAM_START, AddressMap.VIDEO_RAM_END);
+        bus.attach(this, AddressMap.OAM_START, AddressMap.OAM_END);
+        bus.attach(this, AddressMap.REGS_LCDC_START, AddressMap.REGS_LCDC_END);
         this.bus = bus;
     }
 
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return Reg.values().length + vRam.stateSize() + oam.stateSize()
+                + 2 * Long.BYTES + Integer.BYTES + 1;
+    }
+
+    /*
+     * The dma transfer is caught up first, so that the state doesn't depend
+     * on when the oam was last accessed
+     * 
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer state) {
+        continueTransferToOam();
+        for (Reg r : Reg.values())
+            state.put((byte) reg(r));
+        vRam.saveState(state);
+        oam.saveState(state);
+        state.putLong(nextNonIdleCycle).putInt(winY);
+        state.putLong(dmaStartCycle).put((byte) dmaCopied);
+    }
+
+    /*
+     * The images, which the rest of the GameBoy cannot observe, aren't part
+     * of the state : the image being drawn keeps the lines drawn before the
+     * state was loaded
+     * 
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer state) {
+        for (Reg r : Reg.values())
+            setReg(r, Byte.toUnsignedInt(state.get()));
+        vRam.loadState(state);
+        tiles.reload();
+        oam.loadState(state);
+        sprites.invalidate();
+        nextNonIdleCycle = state.getLong();
+        winY = state.getInt();
+        dmaStartCycle = state.getLong();
+        dmaCopied = Byte.toUnsignedInt(state.get());
+    }
+
     /**
      * Getter for currentImage
      * 
@@ -265,58 +361,105 @@ public final class LcdController implements Component, Clocked {
         return currentImage;
     }
 
+    /**
+     * Sets the number of frames skipped after each rendered frame : their
+     * lines aren't computed, and the current image stays the last rendered
+     * one, while the timing of the lcd and its interrupts stay exact
+     * 
+     * @param frameSkip
+     *            number of frames skipped between two rendered ones, 0 to
+     *            render all of them, Integer.MAX_VALUE to only render the
+     *            requested ones
+     * @throws IllegalArgumentException
+     *             if given number is negative
+     * @see #requestFrame()
+     */
+    public void setFrameSkip(int frameSkip) {
+        Preconditions.checkArgument(frameSkip >= 0);
+        this.frameSkip = frameSkip;
+    }
+
+    /**
+     * Requests the next frame to be rendered, even if it should be skipped
+     */
+    public void requestFrame() {
+        frameRequested = true;
+    }
+
+    /**
+     * Decides whether the frame starting is rendered, and starts a new image
+     * if so
+     */
+    private void startFrame() {
+        renderingFrame = frameRequested || skippedFrames >= frameSkip;
+        if (renderingFrame) {
+            skippedFrames = 0;
+            frameRequested = false;
+            nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+        } else
+            skippedFrames++;
+    }
+
     /**
      * computes the Lcd pixel line by composing background and potential window
-     * & sprites
+     * & sprites, in the scratch lines
      * 
      * @param index
      *            the relative lcd line
      * @return computed line composed of background and potential window &
-     *         sprites
+     *         sprites, valid until the next line is computed
      */
-    private LcdImageLine computeLine(int index) {
-        LcdImageLine bg = BLANK_LINE;
+    private ScratchLine computeLine(int index) {
         if (testBitLCDC(LCDC_Bits.BG)) {
             int lcdBgLine = Math.floorMod(index + reg(Reg.SCY), IMAGE_SIZE);
-            bg = computeLine(lcdBgLine, LCDC_Bits.BG_AREA)
-                            .extractWrapped(reg(Reg.SCX), LCD_WIDTH)
-                            .mapColors(reg(Reg.BGP));
-        }
-
-        // Check if window intersects current line
-        int WX_prime = Math.max(reg(Reg.WX) - WX_CORRECTION, 0);
-        boolean windowOnLine = testBitLCDC(LCDC_Bits.WIN) && WX_prime >= 0
-                && WX_prime < LCD_WIDTH && reg(Reg.LY) >= reg(Reg.WY);
+            computeLine(lcdBgLine, LCDC_Bits.BG_AREA, areaLine);
+            composedLine.extractWrappedFrom(areaLine, reg(Reg.SCX));
+            composedLine.mapColorsInto(reg(Reg.BGP), composedLine);
+        } else
+            composedLine.clear();
 
         // Compute window line and compose with background
-        if (windowOnLine) {
-            LcdImageLine win = computeLine(winY, LCDC_Bits.WIN_AREA)
-                    .extractWrapped(0, LCD_WIDTH).mapColors(reg(Reg.BGP));
+        if (windowOnLine()) {
+            int WX_prime = Math.max(reg(Reg.WX) - WX_CORRECTION, 0);
+            computeLine(winY, LCDC_Bits.WIN_AREA, areaLine);
+            windowLine.extractWrappedFrom(areaLine, 0);
+            windowLine.mapColorsInto(reg(Reg.BGP), windowLine);
             winY++;
-            bg = bg.join(win.shift(WX_prime), WX_prime);
+            windowLine.shiftInto(WX_prime, windowLine);
+            composedLine.joinInto(windowLine, WX_prime, composedLine);
         }
 
         // Compute sprites
         if (testBitLCDC(LCDC_Bits.OBJ)) {
-            LcdImageLine[] spriteLines = computeSpriteLines(index);
-            return composeSpritesAndBG(spriteLines[0], spriteLines[1], bg);
-        } else
-            return bg;
+            computeSpriteLines(index);
+            composeSpritesAndBG();
+        }
+        return composedLine;
+    }
+
+    /**
+     * Checks if window intersects current line
+     * 
+     * @return true if the window is drawn on the current line
+     */
+    private boolean windowOnLine() {
+        int WX_prime = Math.max(reg(Reg.WX) - WX_CORRECTION, 0);
+        return testBitLCDC(LCDC_Bits.WIN) && WX_prime >= 0
+                && WX_prime < LCD_WIDTH && reg(Reg.LY) >= reg(Reg.WY);
     }
 
     /**
-     * Computes line for given area (BG_AREA or WIN_AREA), if active,
-     * using given line index. Returns a blank line if inactive.
+     * Computes line for given area (BG_AREA or WIN_AREA), using given line
+     * index
      * 
      * @param index
      *            line being drawn
      * @param area
      *            tile area
-     * @return 160-pixel long line.
+     * @param dst
+     *            256-pixel long line receiving the area line
      */
-    private LcdImageLine computeLine(int index, LCDC_Bits area) {
-        LcdImageLine.Builder b = new LcdImageLine.Builder(IMAGE_SIZE);
-
+    private void computeLine(int index, LCDC_Bits area, ScratchLine dst) {
         int tileLine = index / TILE_SIZE;
         int line = index % TILE_SIZE;
 
@@ -324,43 +467,42 @@ public final class LcdController implements Component, Clocked {
 
         for (int tile = 0; tile < IMAGE_TILE_SIZE; tile++) {
 
-            int tileIndex = read(areaStart + tileLine * IMAGE_TILE_SIZE + tile);
+            // The window line keeps growing while the lcd is switched off and
+            // on during a frame, until its area runs past the video ram
+            int address = areaStart + tileLine * IMAGE_TILE_SIZE + tile;
+            int tileIndex = address < AddressMap.VIDEO_RAM_END
+                    ? vRam.read(address - AddressMap.VIDEO_RAM_START)
+                    : NO_DATA;
 
             if (!testBitLCDC(LCDC_Bits.TILE_SOURCE))
                 tileIndex = Bits.clip(8, tileIndex + TILE_INDEX_CORRECTION);
 
-            addTileToLine(b, tile, tileIndex, line);
+            addTileToLine(dst, tile, tileIndex, line);
         }
-        return b.build();
     }
 
     /**
-     * Makes background sprite line and foreground sprite line
+     * Makes background sprite line and foreground sprite line, in their
+     * scratch lines
      * 
      * @param index
      *            index of line being drawn
-     * @return array with background sprite line first and foreground sprite
-     *         line second
      */
-    private LcdImageLine[] computeSpriteLines(int index) {
-        LcdImageLine bgLine = new LcdImageLine.Builder(LCD_WIDTH).build();
-        LcdImageLine fgLine = new LcdImageLine.Builder(LCD_WIDTH).build();
+    private void computeSpriteLines(int index) {
+        bgSpritesLine.clear();
+        fgSpritesLine.clear();
 
         boolean bigSprites = testBitLCDC(LCDC_Bits.OBJ_SIZE);
 
-        int[] sprites = spritesIntersectingLine(index, bigSprites);
-
-        for (int spriteIndex : sprites) {
-            LcdImageLine.Builder spriteLineBuilder = new LcdImageLine.Builder(LCD_WIDTH);
-
-            int address = AddressMap.OAM_START + spriteIndex * SPRITE_BYTE_SIZE;
+        for (int i = 0, n = sprites.count(index, bigSprites); i < n; i++) {
+            int address = sprites.sprite(index, i) * SPRITE_BYTE_SIZE;
 
-            int y = read(address) - SPRITE_Y_CORRECTION;
-            int x = read(address + 1) - SPRITE_X_CORRECTION;
-            int tileIndex = read(address + 2);
+            int y = oam.read(address) - SPRITE_Y_CORRECTION;
+            int x = oam.read(address + 1) - SPRITE_X_CORRECTION;
+            int tileIndex = oam.read(address + 2);
             if(bigSprites) tileIndex = Bits.set(tileIndex, 0, false); //for Zelda's fairy
 
-            int infos = read(address + 3);
+            int infos = oam.read(address + 3);
 
             int tileLine = index - y;
 
@@ -368,39 +510,40 @@ public final class LcdController implements Component, Clocked {
                 tileLine = bigSprites ? BIG_SPRITE_LINES - tileLine - 1
                         : SPRITE_LINES - tileLine - 1;
 
-            int[] lineBytes = getLineBytes(tileIndex, tileLine,
+            int row = tileRowIndex(tileIndex, tileLine,
                     AddressMap.TILE_SOURCE[1]);
+            int lsb = tiles.lsb(row), msb = tiles.msb(row);
 
             /*
-             * Horizontal flip Since tiles (bytes) read from the bus are stored
-             * as is in the vRam, we have to reverse them when computing a NOT
-             * reversed sprite, and we don't have to reverse them when computing
-             * a reversed one
+             * Horizontal flip Since the cached tiles are reversed, as the
+             * pixels of a line, we have to reverse them back when computing a
+             * reversed sprite, and we don't have to when computing a NOT
+             * reversed one
              */
-            if (!testBitSprite(SpriteInfos.FLIP_H, infos)) {
-                lineBytes[0] = Bits.reverse8(lineBytes[0]);
-                lineBytes[1] = Bits.reverse8(lineBytes[1]);
+            if (testBitSprite(SpriteInfos.FLIP_H, infos)) {
+                lsb = Bits.reverse8(lsb);
+                msb = Bits.reverse8(msb);
             }
 
-            spriteLineBuilder.setBytes(0, lineBytes[1], lineBytes[0]);
-            LcdImageLine spriteLine = spriteLineBuilder.build().shift(x)
-                    .mapColors(testBitSprite(SpriteInfos.PALETTE, infos)
+            spriteLine.clear();
+            spriteLine.setBytes(0, msb, lsb);
+            spriteLine.shiftInto(x, spriteLine);
+            spriteLine.mapColorsInto(testBitSprite(SpriteInfos.PALETTE, infos)
                             ? reg(Reg.OBP1)
-                            : reg(Reg.OBP0));
+                            : reg(Reg.OBP0), spriteLine);
 
             if (testBitSprite(SpriteInfos.BEHIND_BG, infos))
-                bgLine = spriteLine.below(bgLine);
+                spriteLine.belowInto(bgSpritesLine, bgSpritesLine);
             else
-                fgLine = spriteLine.below(fgLine);
+                spriteLine.belowInto(fgSpritesLine, fgSpritesLine);
         }
-        return new LcdImageLine[] { bgLine, fgLine };
     }
 
     /**
      * Get tile-line from memory and adds it to currently building line
      * 
-     * @param b
-     *            current line builder
+     * @param dst
+     *            line being built
      * @param tile
      *            number of the tile being draw in its respective line
      * @param tileIndex
@@ -408,57 +551,81 @@ public final class LcdController implements Component, Clocked {
      * @param tileLineIndex
      *            line of the designated tile to be added
      */
-    private void addTileToLine(LcdImageLine.Builder lb, int tile, int tileIndex, int lineIndex) {
+    private void addTileToLine(ScratchLine dst, int tile, int tileIndex, int lineIndex) {
         int startAddress = AddressMap.TILE_SOURCE[testBitLCDC(LCDC_Bits.TILE_SOURCE) ? 1 : 0];
 
-        int[] lineBytes = getLineBytes(tileIndex, lineIndex, startAddress);
-        lb.setBytes(tile, Bits.reverse8(lineBytes[1]),
-                Bits.reverse8(lineBytes[0]));
+        int row = tileRowIndex(tileIndex, lineIndex, startAddress);
+        dst.setBytes(tile, tiles.msb(row), tiles.lsb(row));
     }
 
-    private int[] getLineBytes(int tileIndex, int lineIndex, int startAddress) {
-        int address = startAddress + tileIndex * 2 * Byte.SIZE + 2 * lineIndex;
-        return new int[] {read(address), read(address + 1)};
+    /**
+     * Computes the index in the video ram of the first byte of a tile row
+     * 
+     * @param tileIndex
+     *            index of the tile, from given start address
+     * @param lineIndex
+     *            row of the tile
+     * @param startAddress
+     *            address of the tile source
+     * @return index of the row in the video ram
+     */
+    private int tileRowIndex(int tileIndex, int lineIndex, int startAddress) {
+        return startAddress - AddressMap.VIDEO_RAM_START
+                + tileIndex * 2 * Byte.SIZE + 2 * lineIndex;
     }
 
     /**
-     * Computes the indices of the first 10 sprites intersecting with given line
-     * 
-     * @param bigSprites
-     *            true if sprites are 16 pixels high
-     * @return array of intersecting sprites' indices
+     * Composes the sprite lines with the background line, into the latter :
+     * background sprites only show where the background has color 0
      */
-    private int[] spritesIntersectingLine(int line, boolean bigSprites) {
-        int[] sprites = new int[10];
-        int spriteCount = 0;
-        for (int sprite = 0; sprite <= TOTAL_SPRITES
-                && spriteCount < MAX_SPRITES_PER_LINE; sprite++) {
-
-            int spriteAddress = AddressMap.OAM_START
-                    + sprite * SPRITE_BYTE_SIZE;
-            int spriteY = read(spriteAddress) - SPRITE_Y_CORRECTION;
-
-            int range = bigSprites ? BIG_SPRITE_LINES : SPRITE_LINES;
-
-            if (line >= spriteY && line <= spriteY + range - 1) {
-                int spriteX = read(spriteAddress + 1);
-                sprites[spriteCount] = (spriteX << Byte.SIZE) | sprite;
-                spriteCount++;
-            }
-        }
-        Arrays.sort(sprites, 0, spriteCount);
+    private void composeSpritesAndBG() {
+        composedLine.opacifyWhereTransparent(bgSpritesLine);
+        bgSpritesLine.belowInto(composedLine, composedLine);
+        composedLine.belowInto(fgSpritesLine, composedLine);
+    }
 
-        int[] spritesIndex = new int[spriteCount];
-        for (int i = 0; i < spriteCount; i++) {
-            spritesIndex[i] = Bits.clip(8, sprites[i]);
-        }
+    /**
+     * Starts copying the page of the bus given by the DMA register to the oam
+     * (Direct Memory Access), one byte per cycle from the next one on. The
+     * bytes aren't copied as the cycles go, but in blocks, when the oam is
+     * accessed or drawn, and at the end of the transfer
+     */
+    private void startTransferToOam() {
+        dmaStartCycle = lastCycle;
+        dmaCopied = 0;
+    }
 
-        return spritesIndex;
+    /**
+     * Computes the cycle at which the last byte of the current dma transfer is
+     * copied, at which it is completed, before the cpu can change its source
+     * 
+     * @return cycle at which the dma transfer ends, or Long.MAX_VALUE if all
+     *         its bytes were copied
+     */
+    private long dmaEndCycle() {
+        return dmaCopied < AddressMap.OAM_RAM_SIZE
+                ? dmaStartCycle + AddressMap.OAM_RAM_SIZE
+                : Long.MAX_VALUE;
     }
 
-    private LcdImageLine composeSpritesAndBG(LcdImageLine bgSprites, LcdImageLine fgSprites, LcdImageLine bg) {
-        BitVector newOpacity = bg.opacity().or(bgSprites.opacity().not());
-        return bgSprites.below(bg, newOpacity).below(fgSprites);
+    /**
+     * Copies to the oam, at once, the bytes of the current dma transfer which
+     * should have been copied by the last cycle, resolving the source page on
+     * the bus a single time
+     */
+    private void continueTransferToOam() {
+        int copied = (int) Math.min(AddressMap.OAM_RAM_SIZE,
+                Math.max(dmaCopied, lastCycle - dmaStartCycle));
+        if (copied == dmaCopied)
+            return;
+
+        // Counted as copied first, in case the source page is the oam itself
+        int from = dmaCopied, length = copied - from;
+        dmaCopied = copied;
+        bus.readBlock((reg(Reg.DMA) << Byte.SIZE) + from, dmaBytes, from,
+                length);
+        oam.write(from, dmaBytes, from, length);
+        sprites.invalidate();
     }
 
     private void requestPotentialInterrupt(LcdMode mode) {
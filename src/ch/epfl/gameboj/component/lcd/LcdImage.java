@@ -5,17 +5,25 @@
 
 package ch.epfl.gameboj.component.lcd;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.bits.BitVector;
 
+/**
+ * Image of the lcd, whose pixels are packed 2 bits per pixel, line after line
+ * from the top : each long holds the colors of 32 consecutive pixels of a
+ * line, pixel i of the long in bits 2i and 2i + 1. Transparent pixels are
+ * stored with color 0
+ */
 public final class LcdImage {
 
-    private final List<LcdImageLine> lines;
+    private static final int PIXELS_PER_LONG = Long.SIZE / 2;
+
+    private final int width, height;
+    private final long[] pixels;
 
     /**
      * Constructor for LcdImage
@@ -24,23 +32,60 @@ public final class LcdImage {
      *            the image's lines
      * @throws IllegalArgumentException
      *             if lines consists of 0 lines, or lines are 0 pixels long, or
-     *             lines length in pixels isn't a multiple of Integer.SIZE (32)
+     *             lines length in pixels isn't a multiple of Integer.SIZE (32),
+     *             or lines don't all have the same length
      * @throws NullPointerException
      *             if given lines is null
      * 
      */
     public LcdImage(List<LcdImageLine> lines) {
-        // Note that we deliberately DO NOT check that each line has the same
-        // length, since it is too costly (cf. Piazza post @239)
+        // Lines having to be packed one after the other, checking that they
+        // have the same length costs nothing more (cf. Piazza post @239)
         Objects.requireNonNull(lines);
         Preconditions.checkArgument(lines.get(0).size() > 0 && lines.size() > 0);
         Preconditions.checkArgument(lines.get(0).size() % Integer.SIZE == 0);
 
-        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        Builder b = new Builder(lines.get(0).size(), lines.size());
+        for (int y = 0; y < lines.size(); ++y)
+            b.setLine(y, lines.get(y));
+        width = b.width;
+        height = b.height;
+        pixels = b.pixels;
+    }
+
+    private LcdImage(int width, int height, long[] pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Reads an image of given size, from pixels written by
+     * {@link #writePixels(ByteBuffer)}
+     * 
+     * @param width
+     *            number of pixels in a line
+     * @param height
+     *            number of lines
+     * @param data
+     *            buffer holding the packed pixels, from its position on
+     * @return image read
+     * @throws IllegalArgumentException
+     *             if width is not a multiple of Integer.SIZE or if
+     *             height(width) is negative or null
+     * @throws BufferUnderflowException
+     *             if the buffer doesn't hold all the pixels
+     */
+    public static LcdImage ofPixels(int width, int height, ByteBuffer data) {
+        Builder b = new Builder(width, height);
+        data.asLongBuffer().get(b.pixels);
+        data.position(data.position() + b.pixels.length * Long.BYTES);
+        return new LcdImage(width, height, b.pixels);
     }
 
     public static final class Builder {
-        private final List<LcdImageLine> lines = new ArrayList<>();
+        private final int width, height;
+        private final long[] pixels;
 
         /**
          * Creates LcdImage builder for an image of given width and given
@@ -58,10 +103,9 @@ public final class LcdImage {
             Preconditions.checkArgument(width % Integer.SIZE == 0);
             Preconditions.checkArgument(width > 0 && height > 0);
 
-            for (int i = 0; i < height; ++i)
-                lines.add(new LcdImageLine(new BitVector(width, false),
-                        new BitVector(width, false),
-                        new BitVector(width, false)));
+            this.width = width;
+            this.height = height;
+            pixels = new long[width / PIXELS_PER_LONG * height];
         }
 
 
@@ -80,47 +124,92 @@ public final class LcdImage {
          *             ie not in [0, height[
          */
         public Builder setLine(int index, LcdImageLine newLine) {
-            Preconditions.checkArgument(newLine.size() == width());
-            Objects.checkIndex(index, height());
-            lines.set(index, newLine);
+            Preconditions.checkArgument(newLine.size() == width);
+            Objects.checkIndex(index, height);
+
+            int start = index * (width / PIXELS_PER_LONG);
+            for (int w = 0; w < width / PIXELS_PER_LONG; ++w)
+                pixels[start + w] = pack(newLine.msb().word(w),
+                        newLine.lsb().word(w), newLine.opacity().word(w));
             return this;
         }
 
         /**
-         * Builds LcdImage out of the previously set lines
-         * 
-         * @return new LcdImage of Builder's lines
-         */
-        public LcdImage build() {
-            return new LcdImage(lines);
-        }
-        
-        /**
-         * Gets Image Builder's width in pixels
+         * Sets a line of LcdImage as given scratch line, without building an
+         * intermediate LcdImageLine
          * 
-         * @return Builder's width
+         * @param index
+         *            index of line to set
+         * @param newLine
+         *            replaces the previous line at given index
+         * @return this
+         *            allows method chaining
+         * @throws IllegalArgumentException
+         *             if line length doesn't match image width (in pixels)
+         * @throws IndexOutOfBoundException if given index is out-of-bounds,
+         *             ie not in [0, height[
          */
-        private int width() {
-            return lines.get(0).size();
+        Builder setLine(int index, ScratchLine newLine) {
+            Preconditions.checkArgument(newLine.size() == width);
+            Objects.checkIndex(index, height);
+
+            int start = index * (width / PIXELS_PER_LONG);
+            for (int w = 0; w < width / PIXELS_PER_LONG; ++w)
+                pixels[start + w] = pack(newLine.msb(w), newLine.lsb(w),
+                        newLine.opacity(w));
+            return this;
         }
-        
+
         /**
-         * Gets Image Builder's height in pixels
+         * Builds LcdImage out of the previously set lines
          * 
-         * @return Builder's height
+         * @return new LcdImage of Builder's lines
          */
-        private int height() {
-            return lines.size();
+        public LcdImage build() {
+            return new LcdImage(width, height,
+                    Arrays.copyOf(pixels, pixels.length));
         }
     }
 
+    /**
+     * Packs the colors of 32 pixels, given by their msb, lsb and opacity
+     * 
+     * @param msb
+     *            msb of the pixels
+     * @param lsb
+     *            lsb of the pixels
+     * @param opacity
+     *            opacity of the pixels
+     * @return colors of the pixels, 2 bits each
+     */
+    private static long pack(int msb, int lsb, int opacity) {
+        return (spread(msb & opacity) << 1) | spread(lsb & opacity);
+    }
+
+    /**
+     * Spreads the bits of given int over a long, bit i going to bit 2i
+     * 
+     * @param bits
+     *            bits to spread
+     * @return spread bits, the odd bits being 0
+     */
+    private static long spread(int bits) {
+        long v = Integer.toUnsignedLong(bits);
+        v = (v | (v << 16)) & 0x0000_FFFF_0000_FFFFL;
+        v = (v | (v << 8)) & 0x00FF_00FF_00FF_00FFL;
+        v = (v | (v << 4)) & 0x0F0F_0F0F_0F0F_0F0FL;
+        v = (v | (v << 2)) & 0x3333_3333_3333_3333L;
+        v = (v | (v << 1)) & 0x5555_5555_5555_5555L;
+        return v;
+    }
+
     /**
      * Gets image width in pixels
      * 
      * @return image width
      */
     public int width() {
-        return lines.get(0).size();
+        return width;
     }
 
     /**
@@ -129,7 +218,7 @@ public final class LcdImage {
      * @return image height
      */
     public int height() {
-        return lines.size();
+        return height;
     }
 
     /**
@@ -149,7 +238,83 @@ public final class LcdImage {
         Objects.checkIndex(x, width());
         Objects.checkIndex(y, height());
         
-        return lines.get(y).pixelColor(x);
+        int index = y * width + x;
+        return (int) (pixels[index / PIXELS_PER_LONG]
+                >>> (index % PIXELS_PER_LONG * 2)) & 0b11;
+    }
+
+    /**
+     * Computes the number of bytes written by {@link #writePixels(ByteBuffer)}
+     * 
+     * @return size of the packed pixels, in bytes
+     */
+    public int pixelsSize() {
+        return pixels.length * Long.BYTES;
+    }
+
+    /**
+     * Writes the packed pixels of the image in given buffer, from its position
+     * on, to be read by {@link #ofPixels(int, int, ByteBuffer)}
+     * 
+     * @param data
+     *            buffer receiving the pixels
+     * @throws BufferOverflowException
+     *             if the pixels don't fit in the buffer
+     */
+    public void writePixels(ByteBuffer data) {
+        data.asLongBuffer().put(pixels);
+        data.position(data.position() + pixelsSize());
+    }
+
+    /**
+     * Writes the colors of the pixels of a line of the image, mapped through
+     * given palette, in given array
+     * 
+     * @param y
+     *            index of the line, from the top
+     * @param colors
+     *            array receiving the colors
+     * @param offset
+     *            index at which the color of the leftmost pixel is written
+     * @param palette
+     *            colors corresponding to the 4 pixel colors
+     * @throws IndexOutOfBoundsException
+     *             if y isn't in [0, height()[, or the line doesn't fit in
+     *             given array from given offset
+     * @throws IllegalArgumentException
+     *             if the palette doesn't have 4 colors
+     */
+    public void copyLineInto(int y, int[] colors, int offset, int[] palette) {
+        Objects.checkIndex(y, height);
+        Objects.checkFromIndexSize(offset, width, colors.length);
+        Preconditions.checkArgument(palette.length == 4);
+
+        int start = y * (width / PIXELS_PER_LONG);
+        for (int w = start; w < start + width / PIXELS_PER_LONG; ++w) {
+            long p = pixels[w];
+            for (int i = 0; i < PIXELS_PER_LONG; ++i, p >>>= 2)
+                colors[offset++] = palette[(int) p & 0b11];
+        }
+    }
+
+    /**
+     * Writes the colors of all the pixels of the image, mapped through given
+     * palette, in given array, line after line from the top
+     * 
+     * @param colors
+     *            array receiving the colors, of at least width() * height()
+     *            elements
+     * @param palette
+     *            colors corresponding to the 4 pixel colors
+     * @throws IndexOutOfBoundsException
+     *             if the image doesn't fit in given array
+     * @throws IllegalArgumentException
+     *             if the palette doesn't have 4 colors
+     */
+    public void copyInto(int[] colors, int[] palette) {
+        Objects.checkFromIndexSize(0, width * height, colors.length);
+        for (int y = 0; y < height; ++y)
+            copyLineInto(y, colors, y * width, palette);
     }
 
     /*
@@ -159,7 +324,8 @@ public final class LcdImage {
      */
     @Override
     public boolean equals(Object o) {
-        return (o instanceof LcdImage && lines.equals(((LcdImage) o).lines));
+        return (o instanceof LcdImage && width == ((LcdImage) o).width
+                && Arrays.equals(pixels, ((LcdImage) o).pixels));
     }
 
     /*
@@ -169,7 +335,7 @@ public final class LcdImage {
      */
     @Override
     public int hashCode() {
-        return lines.hashCode();
+        return 31 * Arrays.hashCode(pixels) + width;
     }
 
 }
@@ -0,0 +1,375 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.BitVector;
+import ch.epfl.gameboj.bits.Bits;
+
+/**
+ * Mutable line of pixels, reused to compose lcd lines without allocating :
+ * its operations are the ones of LcdImageLine, but write their result into a
+ * destination line (which may be the line itself) instead of creating a new
+ * one. Pixels are stored as 3 arrays of ints (msb, lsb, opacity), bit i of
+ * word w being pixel w * Integer.SIZE + i
+ */
+final class ScratchLine {
+
+    private static final int IDENTITY_PALETTE = 0b11_10_01_00;
+
+    private final int size;
+    private final int[] msb, lsb, opacity;
+
+    /**
+     * Constructs a line of given size, all of its pixels transparent
+     *
+     * @param size
+     *            size of line, in pixels
+     * @throws IllegalArgumentException
+     *             if given size isn't bigger than 0 and a multiple of
+     *             Integer.SIZE (32)
+     */
+    ScratchLine(int size) {
+        Preconditions.checkArgument(size > 0 && size % Integer.SIZE == 0);
+
+        this.size = size;
+        msb = new int[size / Integer.SIZE];
+        lsb = new int[size / Integer.SIZE];
+        opacity = new int[size / Integer.SIZE];
+    }
+
+    /**
+     * Getter for size
+     *
+     * @return size of line, in pixels
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gives the msb of the pixels of a word of this line
+     *
+     * @param w
+     *            index of the word, in [0, size() / Integer.SIZE[
+     * @return msb of the pixels w * Integer.SIZE to (w + 1) * Integer.SIZE - 1
+     */
+    int msb(int w) {
+        return msb[w];
+    }
+
+    /**
+     * Gives the lsb of the pixels of a word of this line
+     *
+     * @param w
+     *            index of the word, in [0, size() / Integer.SIZE[
+     * @return lsb of the pixels w * Integer.SIZE to (w + 1) * Integer.SIZE - 1
+     */
+    int lsb(int w) {
+        return lsb[w];
+    }
+
+    /**
+     * Gives the opacity of the pixels of a word of this line
+     *
+     * @param w
+     *            index of the word, in [0, size() / Integer.SIZE[
+     * @return opacity of the pixels w * Integer.SIZE to (w + 1) *
+     *         Integer.SIZE - 1
+     */
+    int opacity(int w) {
+        return opacity[w];
+    }
+
+    /**
+     * Makes all pixels transparent, of color 0
+     */
+    void clear() {
+        for (int w = 0; w < msb.length; ++w) {
+            msb[w] = 0;
+            lsb[w] = 0;
+            opacity[w] = 0;
+        }
+    }
+
+    /**
+     * Sets byte at given index, as LcdImageLine.Builder does : the pixels of
+     * the byte are opaque if their color isn't 0
+     *
+     * @param index
+     *            index of byte to set (in bytes)
+     * @param mb
+     *            new msb-byte
+     * @param lb
+     *            new lsb-byte
+     * @throws IndexOutOfBoundsException
+     *             if given index is out-of-bounds (ie. not in [0,
+     *             size()/Byte.SIZE[ )
+     * @throws IllegalArgumentException
+     *             if mb or lb isn't an 8-bit value
+     */
+    void setBytes(int index, int mb, int lb) {
+        Objects.checkIndex(index, size / Byte.SIZE);
+        Preconditions.checkBits8(mb);
+        Preconditions.checkBits8(lb);
+
+        int w = index / Integer.BYTES;
+        int shift = (index % Integer.BYTES) * Byte.SIZE;
+        int mask = ~(0xFF << shift);
+        msb[w] = (msb[w] & mask) | (mb << shift);
+        lsb[w] = (lsb[w] & mask) | (lb << shift);
+        opacity[w] = (opacity[w] & mask) | ((mb | lb) << shift);
+    }
+
+    /**
+     * Copies the pixels of given line into this one
+     *
+     * @param line
+     *            line to copy
+     * @throws IllegalArgumentException
+     *             if given line isn't the same size as this
+     */
+    void set(LcdImageLine line) {
+        Preconditions.checkArgument(line.size() == size);
+
+        for (int w = 0; w < msb.length; ++w) {
+            msb[w] = line.msb().word(w);
+            lsb[w] = line.lsb().word(w);
+            opacity[w] = line.opacity().word(w);
+        }
+    }
+
+    /**
+     * Builds an immutable line with the pixels of this one
+     *
+     * @return new LcdImageLine, equal to this line
+     */
+    LcdImageLine toLine() {
+        BitVector.Builder m = new BitVector.Builder(size);
+        BitVector.Builder l = new BitVector.Builder(size);
+        BitVector.Builder o = new BitVector.Builder(size);
+        for (int w = 0; w < msb.length; ++w) {
+            m.setWord(w, msb[w]);
+            l.setWord(w, lsb[w]);
+            o.setWord(w, opacity[w]);
+        }
+        return new LcdImageLine(m.build(), l.build(), o.build());
+    }
+
+    /**
+     * Extracts a line of the size of this one from wrapped extension of given
+     * line, starting from given index, into this line
+     *
+     * @param line
+     *            line to extract from, distinct from this
+     * @param fromIndex
+     *            first pixel to extract
+     * @see LcdImageLine#extractWrapped(int, int)
+     */
+    void extractWrappedFrom(ScratchLine line, int fromIndex) {
+        Preconditions.checkArgument(line != this);
+
+        for (int w = 0; w < msb.length; ++w) {
+            int from = fromIndex + w * Integer.SIZE;
+            msb[w] = wrapped32bits(line.msb, from);
+            lsb[w] = wrapped32bits(line.lsb, from);
+            opacity[w] = wrapped32bits(line.opacity, from);
+        }
+    }
+
+    /**
+     * Shifts this line by given number of pixels, into given line
+     *
+     * @param delta
+     *            number of pixels to shift by (positive for a left-shift,
+     *            negative for a right-shift)
+     * @param dst
+     *            line receiving the result, of the same size, possibly this
+     * @throws IllegalArgumentException
+     *             if given line isn't the same size as this
+     * @see LcdImageLine#shift(int)
+     */
+    void shiftInto(int delta, ScratchLine dst) {
+        Preconditions.checkArgument(dst.size == size);
+
+        // Each word of the result only depends on words of this line at the
+        // same index or on the side of the shift : going from the other side
+        // reads every word before it is overwritten
+        int words = msb.length;
+        for (int i = 0; i < words; ++i) {
+            int w = delta > 0 ? words - 1 - i : i;
+            int from = w * Integer.SIZE - delta;
+            dst.msb[w] = zeroExtended32bits(msb, from);
+            dst.lsb[w] = zeroExtended32bits(lsb, from);
+            dst.opacity[w] = zeroExtended32bits(opacity, from);
+        }
+    }
+
+    /**
+     * Transforms colors of this line according to given palette, into given
+     * line
+     *
+     * @param palette
+     *            value used to represent the color mapping
+     * @param dst
+     *            line receiving the result, of the same size, possibly this
+     * @throws IllegalArgumentException
+     *             if given palette isn't an 8-bit value, or if given line
+     *             isn't the same size as this
+     * @see LcdImageLine#mapColors(int)
+     */
+    void mapColorsInto(int palette, ScratchLine dst) {
+        Preconditions.checkBits8(palette);
+        Preconditions.checkArgument(dst.size == size);
+
+        boolean identity = palette == IDENTITY_PALETTE;
+        for (int w = 0; w < msb.length; ++w) {
+            int m = msb[w], l = lsb[w];
+            int newM = m, newL = l;
+            if (!identity) {
+                newM = 0;
+                newL = 0;
+                for (int color = 0; color < 4; ++color) {
+                    int pixels = (Bits.test(color, 1) ? m : ~m)
+                            & (Bits.test(color, 0) ? l : ~l);
+                    int newColor = Bits.extract(palette, color * 2, 2);
+                    if (Bits.test(newColor, 1))
+                        newM |= pixels;
+                    if (Bits.test(newColor, 0))
+                        newL |= pixels;
+                }
+            }
+            dst.msb[w] = newM;
+            dst.lsb[w] = newL;
+            dst.opacity[w] = opacity[w];
+        }
+    }
+
+    /**
+     * Composes this line with given line on top of it, into given line :
+     * pixels are taken from top if they are opaque, otherwise from this
+     *
+     * @param top
+     *            same-sized line, to be "placed" on top
+     * @param dst
+     *            line receiving the result, of the same size, possibly this or
+     *            top
+     * @throws IllegalArgumentException
+     *             if given lines aren't the same size as this
+     * @see LcdImageLine#below(LcdImageLine)
+     */
+    void belowInto(ScratchLine top, ScratchLine dst) {
+        Preconditions.checkArgument(top.size == size && dst.size == size);
+
+        for (int w = 0; w < msb.length; ++w) {
+            int o = top.opacity[w];
+            dst.msb[w] = (o & top.msb[w]) | (~o & msb[w]);
+            dst.lsb[w] = (o & top.lsb[w]) | (~o & lsb[w]);
+            dst.opacity[w] = o | opacity[w];
+        }
+    }
+
+    /**
+     * Joins this line with given line, into given line : pixels are taken
+     * from other from given index on, and from this before it
+     *
+     * @param other
+     *            same-size line
+     * @param fromIndex
+     *            index from which to take other line pixels
+     * @param dst
+     *            line receiving the result, of the same size, possibly this or
+     *            other
+     * @throws IllegalArgumentException
+     *             if given lines aren't the same size as this
+     * @see LcdImageLine#join(LcdImageLine, int)
+     */
+    void joinInto(ScratchLine other, int fromIndex, ScratchLine dst) {
+        Preconditions.checkArgument(other.size == size && dst.size == size);
+
+        for (int w = 0; w < msb.length; ++w) {
+            // Mask of the pixels of the word taken from other, as
+            // LcdImageLine computes it : all ones shifted by fromIndex
+            int mask = zeroExtended32bits(null, w * Integer.SIZE - fromIndex);
+            dst.msb[w] = (mask & other.msb[w]) | (~mask & msb[w]);
+            dst.lsb[w] = (mask & other.lsb[w]) | (~mask & lsb[w]);
+            dst.opacity[w] = (mask & other.opacity[w]) | (~mask & opacity[w]);
+        }
+    }
+
+    /**
+     * Makes opaque the pixels of this line which are transparent in given
+     * line, their colors being left unchanged
+     *
+     * @param line
+     *            same-size line
+     * @throws IllegalArgumentException
+     *             if given line isn't the same size as this
+     */
+    void opacifyWhereTransparent(ScratchLine line) {
+        Preconditions.checkArgument(line.size == size);
+
+        for (int w = 0; w < opacity.length; ++w)
+            opacity[w] |= ~line.opacity[w];
+    }
+
+    /**
+     * Extracts 32 bits starting at given index, zeros being added outside of
+     * given words
+     *
+     * @param words
+     *            bits to extract from, or null for a line full of ones
+     * @param fromIndex
+     *            index of the lsb to extract
+     * @return extracted bits
+     */
+    private int zeroExtended32bits(int[] words, int fromIndex) {
+        int index = Math.floorMod(fromIndex, Integer.SIZE);
+        int chunk = Math.floorDiv(fromIndex, Integer.SIZE);
+
+        int low = word(words, chunk);
+        if (index == 0)
+            return low;
+        return (low >>> index) | (word(words, chunk + 1) << (Integer.SIZE - index));
+    }
+
+    /**
+     * Gives the word at given index, which may be outside of this line
+     *
+     * @param words
+     *            words of the line, or null for a line full of ones
+     * @param index
+     *            index of the word
+     * @return word at given index, 0 outside of the line
+     */
+    private int word(int[] words, int index) {
+        if (index < 0 || index >= msb.length)
+            return 0;
+        return words == null ? -1 : words[index];
+    }
+
+    /**
+     * Extracts 32 bits starting at given index, wrapping around given words
+     *
+     * @param words
+     *            bits to extract from
+     * @param fromIndex
+     *            index of the lsb to extract
+     * @return extracted bits
+     */
+    private static int wrapped32bits(int[] words, int fromIndex) {
+        int index = Math.floorMod(fromIndex, Integer.SIZE);
+        int chunk = Math.floorDiv(fromIndex, Integer.SIZE);
+
+        int low = words[Math.floorMod(chunk, words.length)];
+        if (index == 0)
+            return low;
+        int high = words[Math.floorMod(chunk + 1, words.length)];
+        return (low >>> index) | (high << (Integer.SIZE - index));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * Index of the sprites of the object attribute memory by the lcd lines they
+ * cover : for each line, the (at most 10) sprites drawn on it, sorted by x
+ * coordinate then by index. The index is rebuilt when it is next used after
+ * the coordinates of a sprite or the size of the sprites changed, which
+ * happens about once a frame, instead of scanning the memory on every line
+ */
+final class SpriteIndex {
+
+    private static final int TOTAL_SPRITES = 40, MAX_SPRITES_PER_LINE = 10,
+            SPRITE_BYTE_SIZE = 4, SPRITE_LINES = 8, BIG_SPRITE_LINES = 16,
+            SPRITE_Y_CORRECTION = 16;
+
+    private final Ram oam;
+    private final int lines;
+
+    // sprites of each line : (x << 8) | index, sorted
+    private final int[] sprites;
+    private final int[] counts;
+
+    private boolean valid = false;
+    private boolean bigSprites;
+
+    /**
+     * Constructs the index of the sprites of given object attribute memory
+     *
+     * @param oam
+     *            object attribute memory, of TOTAL_SPRITES sprites
+     * @param lines
+     *            number of lines of the lcd
+     * @throws NullPointerException
+     *             if given memory is null
+     */
+    SpriteIndex(Ram oam, int lines) {
+        this.oam = Objects.requireNonNull(oam);
+        this.lines = lines;
+        sprites = new int[lines * MAX_SPRITES_PER_LINE];
+        counts = new int[lines];
+    }
+
+    /**
+     * Invalidates the index if given byte of the memory, which was written,
+     * is a coordinate of a sprite
+     *
+     * @param index
+     *            index of the byte written, in the memory
+     */
+    void update(int index) {
+        // y and x coordinates are the first two bytes of a sprite
+        if (index % SPRITE_BYTE_SIZE < 2)
+            valid = false;
+    }
+
+    /**
+     * Invalidates the index, after the whole memory was replaced
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Gives the number of sprites drawn on given line
+     *
+     * @param line
+     *            lcd line
+     * @param bigSprites
+     *            true if sprites are 16 pixels high
+     * @return number of sprites on the line, at most 10
+     */
+    int count(int line, boolean bigSprites) {
+        if (!valid || bigSprites != this.bigSprites)
+            rebuild(bigSprites);
+        return counts[line];
+    }
+
+    /**
+     * Gives a sprite drawn on given line, count(line, bigSprites) having
+     * been called since the index was last invalidated
+     *
+     * @param line
+     *            lcd line
+     * @param i
+     *            rank of the sprite on the line, in [0, count(line)[
+     * @return index of the sprite in the memory
+     */
+    int sprite(int line, int i) {
+        return sprites[line * MAX_SPRITES_PER_LINE + i] & 0xFF;
+    }
+
+    private void rebuild(boolean bigSprites) {
+        Arrays.fill(counts, 0);
+        int range = bigSprites ? BIG_SPRITE_LINES : SPRITE_LINES;
+
+        // Sprites being added in order, the first 10 of a line are kept
+        for (int sprite = 0; sprite < TOTAL_SPRITES; sprite++) {
+            int address = sprite * SPRITE_BYTE_SIZE;
+            int spriteY = oam.read(address) - SPRITE_Y_CORRECTION;
+            int spriteX = oam.read(address + 1);
+
+            int last = Math.min(spriteY + range, lines);
+            for (int line = Math.max(spriteY, 0); line < last; line++) {
+                if (counts[line] < MAX_SPRITES_PER_LINE)
+                    sprites[line * MAX_SPRITES_PER_LINE + counts[line]++]
+                            = (spriteX << Byte.SIZE) | sprite;
+            }
+        }
+        for (int line = 0; line < lines; line++) {
+            int from = line * MAX_SPRITES_PER_LINE;
+            Arrays.sort(sprites, from, from + counts[line]);
+        }
+
+        this.bigSprites = bigSprites;
+        valid = true;
+    }
+}
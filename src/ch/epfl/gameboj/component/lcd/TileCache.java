@@ -0,0 +1,94 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Objects;
+
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * Decoded copy of the 384 tiles of the video ram, from which lines are drawn
+ * : each row of 8 pixels is kept with its lsb and msb bytes reversed, so that
+ * bit i is the i-th pixel from the left, as lines store them. A row is decoded
+ * again whenever one of its bytes is written, which costs less than tracking
+ * it as dirty until it is drawn
+ */
+final class TileCache {
+
+    private static final int TILES = 384, TILE_BYTES = 16;
+
+    /**
+     * Number of bytes of the video ram holding tiles, from its start
+     */
+    static final int TILE_DATA_SIZE = TILES * TILE_BYTES;
+
+    private final Ram vRam;
+    // rows, indexed by half the index of their first byte in the video ram :
+    // reversed msb in the 8 msb, reversed lsb in the 8 lsb
+    private final char[] rows = new char[TILE_DATA_SIZE / 2];
+
+    /**
+     * Constructs the cache of the tiles of given video ram
+     *
+     * @param vRam
+     *            video ram, of at least TILE_DATA_SIZE bytes
+     * @throws NullPointerException
+     *             if given ram is null
+     */
+    TileCache(Ram vRam) {
+        this.vRam = Objects.requireNonNull(vRam);
+        reload();
+    }
+
+    /**
+     * Decodes again the row containing given byte of the video ram, after it
+     * was written. Nothing is done for bytes which aren't part of a tile
+     *
+     * @param index
+     *            index of the byte written, in the video ram
+     */
+    void update(int index) {
+        if (index < TILE_DATA_SIZE)
+            decode(index / 2);
+    }
+
+    /**
+     * Decodes again all the rows, after the whole video ram was replaced
+     */
+    void reload() {
+        for (int row = 0; row < rows.length; ++row)
+            decode(row);
+    }
+
+    /**
+     * Gives the reversed lsb byte of the row starting at given index
+     *
+     * @param index
+     *            index of the first byte of the row, in the video ram
+     * @return lsb of the pixels of the row, the leftmost pixel first
+     */
+    int lsb(int index) {
+        return rows[index / 2] & 0xFF;
+    }
+
+    /**
+     * Gives the reversed msb byte of the row starting at given index
+     *
+     * @param index
+     *            index of the first byte of the row, in the video ram
+     * @return msb of the pixels of the row, the leftmost pixel first
+     */
+    int msb(int index) {
+        return rows[index / 2] >>> Byte.SIZE;
+    }
+
+    private void decode(int row) {
+        int lsb = Bits.reverse8(vRam.read(2 * row));
+        int msb = Bits.reverse8(vRam.read(2 * row + 1));
+        rows[row] = (char) ((msb << Byte.SIZE) | lsb);
+    }
+}
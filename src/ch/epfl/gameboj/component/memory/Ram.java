@@ -5,12 +5,14 @@
 
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Stateful;
 
-public final class Ram {
+public final class Ram implements Stateful {
 
     private final byte[] data;
 
@@ -84,6 +86,67 @@ public final class Ram {
         data[index] = (byte) value;
     }
     
+    /**
+     * Writes given bytes of an array, from given index on
+     *
+     * @param index
+     *            index at which to write the first byte
+     * @param values
+     *            array holding the bytes to store
+     * @param offset
+     *            index in values of the first byte to store
+     * @param length
+     *            number of bytes to store
+     * @throws IndexOutOfBoundsException
+     *             if the bytes don't lie in given array, or don't fit in the
+     *             ram from given index
+     */
+    public void write(int index, byte[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        Objects.checkFromIndexSize(index, length, size());
+
+        System.arraycopy(values, offset, data, index, length);
+    }
+
+    /**
+     * Gives access to the array in which ram's content is stored, without
+     * copying it, so that controllers of this package can map it directly
+     * onto the bus
+     * 
+     * @return array backing the ram
+     */
+    byte[] backingArray() {
+        return data;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return size();
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer state) {
+        state.put(data);
+    }
+
+    /*
+     * The content is restored in place, as controllers may have mapped the
+     * array onto the bus
+     * 
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer state) {
+        state.get(data);
+    }
+
     /**
      * Getter for Ram's content
      * @return A copy of ram's data, as an array of bytes
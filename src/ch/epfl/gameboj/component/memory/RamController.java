@@ -7,6 +7,7 @@ package ch.epfl.gameboj.component.memory;
 
 import java.util.Objects;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
 
@@ -80,6 +81,14 @@ public final class RamController implements Component {
         }
     }
 
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#attachTo(ch.epfl.gameboj.Bus)
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attachMemory(this, ram.backingArray(), startAddress, endAddress);
+    }
+
     /**
      * Checks if given address is valid, considering ram's
      * startAddress/endAddress
@@ -5,6 +5,7 @@
 
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -19,7 +20,36 @@ public final class Rom {
      *            rom's data
      */
     public Rom(byte[] data) {
-        this.data = Arrays.copyOf(data, data.length);
+        this(data, true);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param data
+     *            rom's data
+     * @param copy
+     *            false if given array isn't referenced anywhere else, and can
+     *            thus be used without being copied
+     */
+    private Rom(byte[] data, boolean copy) {
+        this.data = copy ? Arrays.copyOf(data, data.length) : data;
+    }
+
+    /**
+     * Constructs a rom containing a copy of the remaining bytes of given
+     * buffer, whose position is left unchanged
+     * 
+     * @param data
+     *            rom's data, typically a file mapped in memory
+     * @return rom with given data
+     * @throws NullPointerException
+     *             if given buffer is null
+     */
+    public static Rom ofBuffer(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return new Rom(bytes, false);
     }
 
     /**
@@ -5,6 +5,8 @@
 
 package ch.epfl.gameboj.gui;
 
+import java.util.Arrays;
+
 import ch.epfl.gameboj.Preconditions;
 
 public final class ColorSet {
@@ -58,6 +60,14 @@ public final class ColorSet {
         return colors[index];
     }
     
+    /**
+     * returns all 4 colors as argb, to be used as a lookup table
+     * @return new array of the colors, indexed like get
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(colors, colors.length);
+    }
+    
     /**
      * Returns red, green and blue values as hex string (in css color formating)
      * @param index which color to translate
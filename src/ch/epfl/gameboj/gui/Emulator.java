@@ -0,0 +1,218 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.gui;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.RewindBuffer;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * Runs a gameboy on its own thread, in real time (scaled by the speed), so
+ * that the emulation and the user interface don't slow each other down.
+ * Once started, only the emulation thread touches the gameboy : other threads
+ * hand it key events through a lock-free queue, and get the last completed
+ * frame, immutable, from a lock-free mailbox
+ */
+public final class Emulator {
+
+    private static final long FRAME_NANOS = (long) (LcdController.FRAME_CYCLES
+            / GameBoy.CYCLES_PER_NANOSEC);
+    // the thread wakes up 4 times per frame, to keep input latency low
+    private static final long SLICE_NANOS = FRAME_NANOS / 4;
+    // time not emulated after a stall (of the machine or a debugger) is lost
+    private static final long MAX_CATCH_UP_NANOS = 4 * FRAME_NANOS;
+
+    private final GameBoy gameboy;
+    private final RewindBuffer rewinder;
+    private final int rewindFrames;
+
+    private final Queue<Integer> keyEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<LcdImage> frame;
+
+    private volatile double speed = 1;
+    private volatile boolean rewinding = false;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    /**
+     * Constructs an emulator for given gameboy, not running yet
+     *
+     * @param gameboy
+     *            gameboy to run
+     * @param rewinder
+     *            buffer in which states are captured, for the gameboy
+     * @param rewindFrames
+     *            number of frames between two captured states
+     * @throws NullPointerException
+     *             if given gameboy or rewinder is null
+     * @throws IllegalArgumentException
+     *             if rewindFrames isn't strictly positive
+     */
+    public Emulator(GameBoy gameboy, RewindBuffer rewinder, int rewindFrames) {
+        Preconditions.checkArgument(rewindFrames > 0);
+        this.gameboy = Objects.requireNonNull(gameboy);
+        this.rewinder = Objects.requireNonNull(rewinder);
+        this.rewindFrames = rewindFrames;
+        frame = new AtomicReference<>(gameboy.lcdController().currentImage());
+    }
+
+    /**
+     * Starts running the gameboy on a new thread
+     *
+     * @throws IllegalStateException
+     *             if the emulator is already running
+     */
+    public void start() {
+        if (running)
+            throw new IllegalStateException();
+        running = true;
+        thread = new Thread(this::run, "emulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops running the gameboy, and waits for the emulation thread to finish,
+     * after which the gameboy can be accessed again from the calling thread
+     */
+    public void stop() {
+        running = false;
+        if (thread == null)
+            return;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Gives the last frame completed by the gameboy
+     *
+     * @return last frame
+     */
+    public LcdImage frame() {
+        return frame.get();
+    }
+
+    /**
+     * Sets the speed of the emulation, relative to the one of a real gameboy
+     *
+     * @param speed
+     *            new speed, 0 pausing the emulation
+     * @throws IllegalArgumentException
+     *             if given speed is negative
+     */
+    public void setSpeed(double speed) {
+        Preconditions.checkArgument(speed >= 0);
+        this.speed = speed;
+    }
+
+    /**
+     * Starts or stops running backwards, in real time : captured states are
+     * restored as often as they were captured, and their frames displayed
+     *
+     * @param rewinding
+     *            true to run backwards
+     */
+    public void setRewinding(boolean rewinding) {
+        this.rewinding = rewinding;
+    }
+
+    /**
+     * Presses given key, as soon as the emulation thread wakes up
+     *
+     * @param key
+     *            key pressed
+     */
+    public void keyPressed(Joypad.Key key) {
+        keyEvents.add((key.ordinal() << 1) | 1);
+    }
+
+    /**
+     * Releases given key, as soon as the emulation thread wakes up
+     *
+     * @param key
+     *            key released
+     */
+    public void keyReleased(Joypad.Key key) {
+        keyEvents.add(key.ordinal() << 1);
+    }
+
+    /**
+     * Emulation loop : every slice of time, applies the key events received,
+     * runs the gameboy for the cycles corresponding to the time elapsed (or
+     * rewinds it), publishes its new frame and sleeps until the next slice
+     */
+    private void run() {
+        Joypad.Key[] keys = Joypad.Key.values();
+        long last = System.nanoTime(), rewindNanos = 0;
+        long targetCycle = gameboy.cycles();
+        long rewindStepCycles = (long) rewindFrames * LcdController.FRAME_CYCLES;
+        long nextCapture = targetCycle + rewindStepCycles;
+        long rewindStepNanos = rewindFrames * FRAME_NANOS;
+        // image of the lcd controller last published, which is only published
+        // again once it changes, so that it doesn't replace a rewound frame
+        LcdImage lcdImage = null;
+
+        while (running) {
+            long now = System.nanoTime();
+            long elapsed = Math.min(now - last, MAX_CATCH_UP_NANOS);
+            last = now;
+
+            for (Integer e; (e = keyEvents.poll()) != null;) {
+                if ((e & 1) != 0)
+                    gameboy.joypad().keyPressed(keys[e >> 1]);
+                else
+                    gameboy.joypad().keyReleased(keys[e >> 1]);
+            }
+
+            double s = speed;
+            if (rewinding && s > 0) {
+                boolean rewound = false;
+                for (rewindNanos += elapsed; rewindNanos >= rewindStepNanos;
+                        rewindNanos -= rewindStepNanos)
+                    rewound |= rewinder.rewind();
+                if (rewound)
+                    frame.set(rewinder.image());
+                targetCycle = gameboy.cycles();
+                nextCapture = targetCycle + rewindStepCycles;
+            } else {
+                targetCycle += (long) (elapsed * GameBoy.CYCLES_PER_NANOSEC * s);
+                gameboy.runUntil(targetCycle);
+                if (gameboy.cycles() >= nextCapture) {
+                    rewinder.capture();
+                    nextCapture = gameboy.cycles() + rewindStepCycles;
+                }
+            }
+
+            gameboy.cartridge().flush();
+            if (gameboy.lcdController().currentImage() != lcdImage) {
+                lcdImage = gameboy.lcdController().currentImage();
+                frame.set(lcdImage);
+            }
+
+            long sleep = SLICE_NANOS - (System.nanoTime() - now);
+            if (sleep > 0)
+                LockSupport.parkNanos(sleep);
+        }
+    }
+}
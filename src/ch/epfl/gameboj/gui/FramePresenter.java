@@ -0,0 +1,103 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.gui;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Displays the frames of the lcd in a single JavaFX image, backed by a pixel
+ * buffer : frames are converted in one pass into an array, and only the lines
+ * which changed since the previous frame are copied to the buffer and
+ * redrawn. Has to be used from the JavaFX application thread
+ */
+public final class FramePresenter {
+
+    private static final int WIDTH = LcdController.LCD_WIDTH,
+            HEIGHT = LcdController.LCD_HEIGHT;
+
+    private final int[] frame = new int[WIDTH * HEIGHT];
+    private final int[] shown = new int[WIDTH * HEIGHT];
+    private final IntBuffer buffer;
+    private final PixelBuffer<IntBuffer> pixelBuffer;
+    private final WritableImage image;
+
+    private LcdImage lastImage = null;
+    private ColorSet lastColors = null;
+    private int[] palette;
+
+    /**
+     * Constructs a presenter, whose image is initially transparent
+     */
+    public FramePresenter() {
+        buffer = ByteBuffer.allocateDirect(WIDTH * HEIGHT * Integer.BYTES)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        pixelBuffer = new PixelBuffer<>(WIDTH, HEIGHT, buffer,
+                PixelFormat.getIntArgbPreInstance());
+        image = new WritableImage(pixelBuffer);
+    }
+
+    /**
+     * Getter for the image displaying the frames
+     *
+     * @return image, always the same one
+     */
+    public Image image() {
+        return image;
+    }
+
+    /**
+     * Displays given frame with given colors. Nothing is done when they are
+     * the ones already displayed
+     *
+     * @param lcdImage
+     *            frame to display, of the size of the lcd
+     * @param colors
+     *            colors of the frame (opaque, as the buffer holds
+     *            premultiplied colors)
+     */
+    public void present(LcdImage lcdImage, ColorSet colors) {
+        if (lcdImage == lastImage && colors == lastColors)
+            return;
+        if (colors != lastColors)
+            palette = colors.toArray();
+        lastImage = lcdImage;
+        lastColors = colors;
+
+        lcdImage.copyInto(frame, palette);
+
+        int first = -1, last = -1;
+        for (int y = 0; y < HEIGHT; ++y) {
+            int from = y * WIDTH, to = from + WIDTH;
+            if (Arrays.mismatch(frame, from, to, shown, from, to) != -1) {
+                if (first < 0)
+                    first = y;
+                last = y;
+            }
+        }
+        if (first < 0)
+            return;
+
+        int from = first * WIDTH, length = (last - first + 1) * WIDTH;
+        System.arraycopy(frame, from, shown, from, length);
+        IntBuffer pixels = buffer.duplicate();
+        pixels.position(from);
+        pixels.put(frame, from, length);
+
+        Rectangle2D dirty = new Rectangle2D(0, first, WIDTH, last - first + 1);
+        pixelBuffer.updateBuffer(b -> dirty);
+    }
+}
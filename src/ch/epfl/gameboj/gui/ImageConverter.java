@@ -9,7 +9,7 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.lcd.LcdController;
 import ch.epfl.gameboj.component.lcd.LcdImage;
 import javafx.scene.image.Image;
-import javafx.scene.image.PixelWriter;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 
 public final class ImageConverter {
@@ -18,21 +18,29 @@ public final class ImageConverter {
     
     /**
      * Creates a JavaFX image from given LcdImage
+     * (allocates a new image : to display frames, use a FramePresenter)
      * @param lcdImage lcdImage to convert
      * @return corresponding JavaFX image
      */
     public static Image convert(LcdImage lcdImage) {
-        
-        WritableImage fxImage = new WritableImage(LcdController.LCD_WIDTH,
-                          LcdController.LCD_HEIGHT);
-        PixelWriter pixW = fxImage.getPixelWriter();
-        
-        for (int y = 0; y < LcdController.LCD_HEIGHT; y++)
-            for (int x = 0; x < LcdController.LCD_WIDTH; x++)
-                pixW.setArgb(x, y, colorSet.get(lcdImage.get(x, y)));
+        int width = LcdController.LCD_WIDTH, height = LcdController.LCD_HEIGHT;
+        int[] pixels = new int[width * height];
+        lcdImage.copyInto(pixels, colorSet.toArray());
+
+        WritableImage fxImage = new WritableImage(width, height);
+        fxImage.getPixelWriter().setPixels(0, 0, width, height,
+                PixelFormat.getIntArgbInstance(), pixels, 0, width);
         return fxImage;
     }
     
+    /**
+     * Getter for the current color palette
+     * @return color set used to convert images
+     */
+    public static ColorSet colorSet() {
+        return colorSet;
+    }
+    
     /**
      * sets the image converter colors to a new color palette
      * @param palette a new or referenced color set
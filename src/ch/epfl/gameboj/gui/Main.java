@@ -6,17 +6,14 @@
 package ch.epfl.gameboj.gui;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.RewindBuffer;
 import ch.epfl.gameboj.component.Joypad;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.component.lcd.LcdController;
@@ -63,10 +60,16 @@ public class Main extends Application{
     
     private static File[] ROM_PATHS = new File("roms").listFiles();;
     
+    // A state is captured every few frames, keeping about 3 minutes of history
+    private static final int REWIND_FRAMES = 4, REWIND_CAPACITY = 2700,
+            REWIND_KEYFRAME_INTERVAL = 60;
+    
     private Thread saver;
     
     private GameBoy gameboj;
     
+    private Emulator emulator;
+    
     public static void main(String[] args) {
         launch(args);
     }
@@ -122,7 +125,7 @@ public class Main extends Application{
         Label valueLabel = new Label("");
         valueLabel.textProperty().bind(speedSlider.valueProperty().asString("%1$.2f x"));
         speedSlider.valueProperty().addListener(e -> {
-            if(!paused) simSpeed = speedSlider.getValue();
+            if(!paused) setSpeed(speedSlider.getValue());
         });
         speedPane.getChildren().addAll(speedLabel, valueLabel, speedSlider);
 
@@ -325,10 +328,10 @@ public class Main extends Application{
 
         Runnable togglePause = () -> {
             if (!paused) {
-                simSpeed = 0;
+                setSpeed(0);
                 backgroundPane.setOpacity(0.5);
             } else {
-                simSpeed = speedSlider.getValue();
+                setSpeed(speedSlider.getValue());
                 backgroundPane.setOpacity(1);
             }
             paused = !paused;
@@ -340,7 +343,7 @@ public class Main extends Application{
                 Joypad.Key p = buttonMap.getOrDefault(e.getText(),
                         arrowsMap.get(e.getCode()));
                 if (p != null) {
-                    gameboj.joypad().keyPressed(p);
+                    emulator.keyPressed(p);
 
                 Shape s = joyButtonMap.getOrDefault(e.getText(),
                         joyArrowMap.get(e.getCode()));
@@ -350,13 +353,17 @@ public class Main extends Application{
                 
                 if(e.getCode().getName() == "P")
                     togglePause.run();
+                if(e.getCode() == KeyCode.R)
+                    emulator.setRewinding(true);
             }
             
             else {
                 Joypad.Key p = buttonMap.getOrDefault(e.getText(),
                         arrowsMap.get(e.getCode()));
             if (p != null)
-                gameboj.joypad().keyReleased(p);
+                emulator.keyReleased(p);
+            if (e.getCode() == KeyCode.R)
+                emulator.setRewinding(false);
 
             Shape s = joyButtonMap.getOrDefault(e.getText(),
                     joyArrowMap.get(e.getCode()));
@@ -395,67 +402,53 @@ public class Main extends Application{
     }
 
     private void startGame(String rom, ImageView lcd) {
+      File saveFile = new File("saves/" + rom.replace(".gb", ".sav"));
+      saveFile.getParentFile().mkdirs();
       try {
-          gameboj = new GameBoy(Cartridge.ofFile(new File("roms/" + rom)));  
+          gameboj = new GameBoy(Cartridge.ofFile(new File("roms/" + rom), saveFile));  
       }
       catch (IOException e) {
           System.out.println("No such rom");
       }
       
-      load(rom);
+      RewindBuffer rewinder = new RewindBuffer(gameboj, REWIND_CAPACITY, REWIND_KEYFRAME_INTERVAL);
+      emulator = new Emulator(gameboj, rewinder, REWIND_FRAMES);
+      emulator.setSpeed(simSpeed);
+      emulator.start();
       
-      timer = new AnimationTimer() {
-      long before = System.nanoTime();
-      long gameboyCycles;
+      FramePresenter presenter = new FramePresenter();
+      lcd.setImage(presenter.image());
       
+      // the gameboy runs on the emulation thread, the FX thread only
+      // presents the last frame it completed
+      timer = new AnimationTimer() {
           @Override
           public void handle(long now) {
-              double deltaTime = now - before;
-              before = now;
-              gameboyCycles += (long) (deltaTime * GameBoy.CYCLES_PER_NANOSEC * simSpeed);
-              gameboj.runUntil(gameboyCycles);
-              lcd.setImage(ImageConverter.convert(gameboj.lcdController().currentImage()));
+              presenter.present(emulator.frame(), ImageConverter.colorSet());
           }
       };
       timer.start();
 
       saver = new Thread() {
           public void run() {
-              save(rom);
+              emulator.stop();
+              gameboj.cartridge().flush();
           }
       };
       
       Runtime.getRuntime().addShutdownHook(saver);
     }
     
+    private void setSpeed(double speed) {
+        simSpeed = speed;
+        if (emulator != null)
+            emulator.setSpeed(speed);
+    }
+    
     private void endGame(String rom) {
       timer.stop();
-      save(rom);
+      emulator.stop();
+      gameboj.cartridge().flush();
       Runtime.getRuntime().removeShutdownHook(saver);
     }
-    
-    private void save(String rom) {
-        byte[] saveData = gameboj.cartridge().save();
-        if(saveData != null) {
-            File saveFile = new File("saves/" + rom.replace(".gb", ".sav"));
-            try(OutputStream s = new FileOutputStream(saveFile)){
-                byte[] data = gameboj.cartridge().save();
-                    s.write(data);
-            }
-            catch (IOException e) {
-                System.out.println("Problem saving");
-            }
-        }
-    }
-    
-    private void load(String rom) {
-        File saveFile = new File("saves/" + rom.replace(".gb", ".sav"));
-        if(saveFile.exists())
-            try (InputStream s = new FileInputStream(saveFile)){
-                gameboj.cartridge().load(s.readAllBytes());
-            }
-            catch (IOException e){
-                System.out.println("Problem loading file");
-            }
-    }
 }
@@ -0,0 +1,71 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+public final class BatchRunnerTest {
+
+    // the boot rom lasts about 124 frames
+    private static final long CYCLES = 150L * LcdController.FRAME_CYCLES;
+
+    // Tetris, whose header passes the checks of the boot rom, executing STOP
+    // at its entry point, on which the cpu throws an error
+    private static File stoppingRom() throws IOException {
+        byte[] data = Files.readAllBytes(new File("roms/Tetris.gb").toPath());
+        data[0x100] = 0x10;
+        File f = Files.createTempFile("TestROM_", ".gb").toFile();
+        f.deleteOnExit();
+        Files.write(f.toPath(), data);
+        return f;
+    }
+
+    @Test
+    void runAllFailsOnInvalidArgs() {
+        List<File> roms = List.of(new File("roms/Tetris.gb"));
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchRunner.runAll(roms, 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchRunner.runAll(roms, CYCLES, 0));
+    }
+
+    @Test
+    void runAllRendersLastFrameLikeGameBoy()
+            throws IOException, InterruptedException {
+        List<File> roms = List.of(new File("roms/Tetris.gb"),
+                new File("roms/SuperMarioLand.gb"), new File("roms/missing.gb"),
+                stoppingRom());
+        List<BatchRunner.Result> results = BatchRunner.runAll(roms, CYCLES, 2);
+
+        assertEquals(roms.size(), results.size());
+        for (int i = 0; i < 2; ++i) {
+            BatchRunner.Result r = results.get(i);
+            assertEquals(roms.get(i), r.rom);
+            assertNull(r.error);
+            assertEquals(CYCLES, r.cycles);
+
+            GameBoy gb = new GameBoy(Cartridge.ofFile(roms.get(i)));
+            gb.runUntil(CYCLES);
+            assertEquals(gb.lcdController().currentImage(), r.lastFrame);
+        }
+        assertNotNull(results.get(2).error);
+        assertTrue(results.get(3).error instanceof Error);
+    }
+}
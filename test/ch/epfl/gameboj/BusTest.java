@@ -5,6 +5,7 @@ package ch.epfl.gameboj;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -104,6 +105,124 @@ class BusTest {
         }
     }
 
+    @Test
+    void attachFailsForInvalidRange() {
+        Bus b = new Bus();
+        Component c = new SimpleComponent(0, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, -1, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, 10, 9));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, 0, 0x10001));
+    }
+
+    @Test
+    void writeOnlyReachesComponentsAttachedToAddress() {
+        SimpleComponent low = new SimpleComponent(0x1234, 0);
+        SimpleComponent high = new SimpleComponent(0xFF42, 0);
+        Bus b = new Bus();
+        b.attach(low, 0x1000, 0x2000);
+        b.attach(high, 0xFF40, 0xFF4C);
+
+        b.write(0xFF00, 1);
+        assertFalse(low.wasWritten());
+        assertFalse(high.wasWritten());
+        b.write(0xFF42, 1);
+        assertFalse(low.wasWritten());
+        assertTrue(high.wasWritten());
+        b.write(0x1FFF, 1);
+        assertTrue(low.wasWritten());
+    }
+
+    @Test
+    void readFollowsAttachOrderWithRanges() {
+        SimpleComponent ranged = new SimpleComponent(0xFF80, 1);
+        SimpleComponent all = new SimpleComponent(0xFF80, 2);
+        Bus b = new Bus();
+        b.attach(ranged, 0xFF80, 0xFFFF);
+        b.attach(all);
+        assertEquals(1, b.read(0xFF80));
+
+        Bus b2 = new Bus();
+        b2.attach(all);
+        b2.attach(ranged, 0xFF80, 0xFFFF);
+        assertEquals(2, b2.read(0xFF80));
+        assertEquals(0xFF, b2.read(0xFFFF));
+    }
+
+    @Test
+    void attachMemoryAccessesArrayWithoutComponent() {
+        SimpleComponent c = new SimpleComponent(0xC042, 0);
+        byte[] memory = new byte[0x2000];
+        Bus b = new Bus();
+        b.attachMemory(c, memory, 0xC000, 0xE000);
+        b.attachMemory(c, memory, 0xE000, 0xFE00);
+
+        b.write(0xC042, 0xAB);
+        assertEquals((byte) 0xAB, memory[0x42]);
+        assertEquals(0xAB, b.read(0xE042));
+        b.write(0xFDFF, 0x12);
+        assertEquals(0x12, b.read(0xDDFF));
+        assertFalse(c.wasRead());
+        assertFalse(c.wasWritten());
+    }
+
+    @Test
+    void attachMemoryFailsForRangeBiggerThanArray() {
+        Bus b = new Bus();
+        Component c = new SimpleComponent(0, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attachMemory(c, new byte[0xFF], 0, 0x100));
+        // the bus is left untouched
+        assertEquals(0xFF, b.read(0));
+    }
+
+    @Test
+    void attachMemoryGoesThroughComponentsWhenPageIsShared() {
+        SimpleComponent memoryComponent = new SimpleComponent(0xC010, 1);
+        SimpleComponent other = new SimpleComponent(0xC020, 2);
+        byte[] memory = new byte[0x100];
+        Bus b = new Bus();
+        b.attachMemory(memoryComponent, memory, 0xC000, 0xC100);
+        b.attach(other, 0xC020, 0xC021);
+
+        b.write(0xC020, 3);
+        assertTrue(other.wasWritten());
+        assertTrue(memoryComponent.wasWritten());
+        assertEquals(3, b.read(0xC020));
+        assertEquals(1, b.read(0xC010));
+
+        Bus b2 = new Bus();
+        b2.attach(new SimpleComponent(0xC020, 2));
+        b2.attachMemory(memoryComponent, memory, 0xC000, 0xC100);
+        assertEquals(2, b2.read(0xC020));
+    }
+
+    @Test
+    void readBlockReadsLikeRead() {
+        SimpleComponent c = new SimpleComponent(0xC0F0, 0);
+        SimpleComponent other = new SimpleComponent(0xD010, 0x56);
+        byte[] memory = new byte[0x2000];
+        for (int i = 0; i < memory.length; ++i)
+            memory[i] = (byte) (i * 7);
+        Bus b = new Bus();
+        b.attachMemory(c, memory, 0xC000, 0xE000);
+        b.attach(other, 0xD000, 0xD100);
+
+        byte[] block = new byte[0x300];
+        b.readBlock(0xCF80, block, 0x10, 0x200);
+        for (int i = 0; i < 0x200; ++i)
+            assertEquals(b.read(0xCF80 + i), Byte.toUnsignedInt(block[0x10 + i]));
+        assertEquals(0, block[0x0F]);
+        assertEquals(0x56, Byte.toUnsignedInt(block[0x10 + 0x90]));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> b.readBlock(0xFF80, block, 0, 0x81));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> b.readBlock(0xC000, block, 0x200, 0x101));
+    }
+
     @Test
     void writeFailsForInvalidData() {
         Random rng = newRandom();
@@ -0,0 +1,74 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+public final class GameBoyStateTest {
+
+    // MBC1 cartridge with ram, so that banking state and ram are saved too
+    private static final File ROM = new File(
+            "roms/LegendofZelda,TheLink'sAwakening.gb");
+
+    private static final long SAVE_CYCLE = 3_000_000, END_CYCLE = 5_000_000;
+
+    private static GameBoy newGameBoy() throws IOException {
+        return new GameBoy(Cartridge.ofFile(ROM));
+    }
+
+    private static void playFrom(GameBoy gb, long cycle) {
+        for (long c = cycle; c < END_CYCLE; c += 50_000) {
+            gb.runUntil(c);
+            if (c % 200_000 == 0)
+                gb.joypad().keyPressed(Joypad.Key.START);
+            else
+                gb.joypad().keyReleased(Joypad.Key.START);
+        }
+        gb.runUntil(END_CYCLE);
+    }
+
+    @Test
+    void loadedStateRunsExactlyLikeSavedOne() throws IOException {
+        GameBoy original = newGameBoy();
+        original.runUntil(SAVE_CYCLE);
+        byte[] saved = original.saveState();
+        playFrom(original, SAVE_CYCLE);
+
+        GameBoy restored = newGameBoy();
+        restored.runUntil(12_345);
+        restored.loadState(saved);
+        assertEquals(SAVE_CYCLE, restored.cycles());
+        assertArrayEquals(saved, restored.saveState());
+        playFrom(restored, SAVE_CYCLE);
+
+        assertArrayEquals(original.saveState(), restored.saveState());
+        assertEquals(original.lcdController().currentImage(),
+                restored.lcdController().currentImage());
+    }
+
+    @Test
+    void loadStateFailsOnInvalidState() throws IOException {
+        GameBoy gb = newGameBoy();
+        byte[] state = gb.saveState();
+        assertEquals(gb.stateSize(), state.length);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> gb.loadState(new byte[state.length - 1]));
+        state[Integer.BYTES + 3] += 1;
+        assertThrows(IllegalArgumentException.class,
+                () -> gb.loadState(state));
+    }
+}
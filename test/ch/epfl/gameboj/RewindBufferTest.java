@@ -0,0 +1,148 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+public final class RewindBufferTest {
+
+    private static final File ROM = new File("roms/SuperMarioLand.gb");
+    private static final long FRAME_CYCLES = 17556;
+
+    private static GameBoy newGameBoy() throws IOException {
+        GameBoy gb = new GameBoy(Cartridge.ofFile(ROM));
+        gb.runUntil(2_000_000);
+        return gb;
+    }
+
+    private static List<byte[]> captureFrames(GameBoy gb, RewindBuffer r,
+            int frames) {
+        List<byte[]> states = new ArrayList<>();
+        for (int i = 0; i < frames; ++i) {
+            gb.runUntil(gb.cycles() + FRAME_CYCLES);
+            states.add(gb.saveState());
+            r.capture();
+        }
+        return states;
+    }
+
+    private static long capturedSize(GameBoy gb) {
+        return gb.stateSize()
+                + gb.lcdController().currentImage().pixelsSize();
+    }
+
+    @Test
+    void constructorFailsOnInvalidArguments() throws IOException {
+        GameBoy gb = newGameBoy();
+        assertThrows(NullPointerException.class,
+                () -> new RewindBuffer(null, 1, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RewindBuffer(gb, 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RewindBuffer(gb, 1, 0));
+    }
+
+    @Test
+    void rewindRestoresCapturedStatesFromNewest() throws IOException {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 100, 8);
+        List<byte[]> states = captureFrames(gb, r, 20);
+        assertEquals(20, r.size());
+
+        for (int i = states.size() - 1; i >= 0; --i) {
+            assertTrue(r.rewind());
+            assertArrayEquals(states.get(i), gb.saveState());
+        }
+        assertEquals(0, r.size());
+        assertFalse(r.rewind());
+    }
+
+    @Test
+    void fullBufferDropsOldestStates() throws IOException {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 5, 3);
+        List<byte[]> states = captureFrames(gb, r, 12);
+        assertEquals(5, r.size());
+
+        for (int i = 11; i >= 7; --i) {
+            assertTrue(r.rewind());
+            assertArrayEquals(states.get(i), gb.saveState());
+        }
+        assertFalse(r.rewind());
+    }
+
+    @Test
+    void captureCanResumeAfterRewind() throws IOException {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 100, 4);
+        List<byte[]> states = captureFrames(gb, r, 10);
+        for (int i = 0; i < 5; ++i)
+            r.rewind();
+
+        List<byte[]> newStates = captureFrames(gb, r, 6);
+        for (int i = newStates.size() - 1; i >= 0; --i) {
+            r.rewind();
+            assertArrayEquals(newStates.get(i), gb.saveState());
+        }
+        for (int i = 4; i >= 0; --i) {
+            r.rewind();
+            assertArrayEquals(states.get(i), gb.saveState());
+        }
+    }
+
+    @Test
+    void rewindGivesFrameOfRestoredState() throws IOException {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 100, 4);
+        List<LcdImage> images = new ArrayList<>();
+        for (int i = 0; i < 6; ++i) {
+            gb.runUntil(gb.cycles() + FRAME_CYCLES);
+            images.add(gb.lcdController().currentImage());
+            r.capture();
+        }
+
+        for (int i = images.size() - 1; i >= 0; --i) {
+            r.rewind();
+            assertEquals(images.get(i), r.image());
+        }
+    }
+
+    @Test
+    void keyframeIntervalIsKeptAfterRewind() throws IOException {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 100, 4);
+        // keyframes at the 1st and 5th states, 2 states relative to the last
+        captureFrames(gb, r, 6);
+        r.rewind();
+        // 3 more states complete the interval of the last keyframe
+        captureFrames(gb, r, 3);
+        assertTrue(r.byteSize() < 3L * capturedSize(gb));
+    }
+
+    @Test
+    void deltasAreMuchSmallerThanStates() throws IOException {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 100, 50);
+        captureFrames(gb, r, 50);
+        // the screen changes during those frames, frames differing from the
+        // keyframe one in about 2 kB
+        assertTrue(r.byteSize() < 50L * capturedSize(gb) / 4);
+    }
+}
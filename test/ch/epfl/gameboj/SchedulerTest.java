@@ -0,0 +1,138 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Clocked;
+
+public final class SchedulerTest {
+
+    private static final class PeriodicComponent implements Clocked {
+        private final int period;
+        private final List<Long> cycles;
+        private final List<String> order;
+        private final String name;
+
+        PeriodicComponent(String name, int period, List<String> order) {
+            this.name = name;
+            this.period = period;
+            this.order = order;
+            this.cycles = new ArrayList<>();
+        }
+
+        @Override
+        public void cycle(long cycle) {
+            if (cycle % period == 0) {
+                cycles.add(cycle);
+                order.add(name);
+            }
+        }
+
+        @Override
+        public long nextEventCycle(long cycle) {
+            return (cycle + period - 1) / period * period;
+        }
+    }
+
+    @Test
+    void registerFailsForNullComponent() {
+        assertThrows(NullPointerException.class,
+                () -> new Scheduler().register(null));
+    }
+
+    @Test
+    void runUntilFailsWhenGoingBackwardsInTime() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Scheduler().runUntil(10, 9));
+    }
+
+    @Test
+    void runUntilClocksComponentsOnlyOnTheirEvents() {
+        List<String> order = new ArrayList<>();
+        PeriodicComponent c = new PeriodicComponent("c", 7, order);
+        Scheduler s = new Scheduler();
+        s.register(c);
+
+        assertEquals(100, s.runUntil(0, 100));
+        assertEquals(15, c.cycles.size());
+        for (int i = 0; i < c.cycles.size(); ++i)
+            assertEquals(7L * i, (long) c.cycles.get(i));
+    }
+
+    @Test
+    void runUntilClocksComponentsInRegistrationOrder() {
+        List<String> order = new ArrayList<>();
+        Scheduler s = new Scheduler();
+        s.register(new PeriodicComponent("a", 3, order));
+        s.register(new PeriodicComponent("b", 2, order));
+        s.runUntil(0, 7);
+
+        assertEquals(List.of("a", "b", "b", "a", "b", "a", "b"), order);
+    }
+
+    @Test
+    void runUntilCanBeResumed() {
+        List<String> order = new ArrayList<>();
+        PeriodicComponent c = new PeriodicComponent("c", 5, order);
+        Scheduler s = new Scheduler();
+        s.register(c);
+        for (long cycle = 0; cycle < 50; ++cycle)
+            s.runUntil(cycle, cycle + 1);
+
+        assertEquals(10, c.cycles.size());
+    }
+
+    @Test
+    void runUntilLetsEarliestComponentSkipToNextEventOfOthers() {
+        List<String> order = new ArrayList<>();
+        List<Long> clocked = new ArrayList<>();
+        List<Long> horizons = new ArrayList<>();
+        Scheduler s = new Scheduler();
+        s.register(new PeriodicComponent("a", 10, order));
+        s.register(new Clocked() {
+            @Override
+            public void cycle(long cycle) {
+                clocked.add(cycle);
+            }
+
+            @Override
+            public long skipIdleCycles(long cycle, long horizon) {
+                horizons.add(horizon);
+                return horizon;
+            }
+        });
+        s.runUntil(0, 35);
+
+        assertEquals(List.of(0L, 10L, 20L, 30L, 34L), clocked);
+        assertEquals(List.of(10L, 20L, 30L, 35L), horizons);
+    }
+
+    @Test
+    void nextEventCycleIsMaxValueWhenAllComponentsAreIdle() {
+        Scheduler s = new Scheduler();
+        s.register(c -> {});
+        s.register(new Clocked() {
+            @Override
+            public void cycle(long cycle) {}
+
+            @Override
+            public long nextEventCycle(long cycle) {
+                return Long.MAX_VALUE;
+            }
+        });
+        assertEquals(42, s.nextEventCycle(42));
+
+        Scheduler idle = new Scheduler();
+        assertEquals(Long.MAX_VALUE, idle.nextEventCycle(42));
+    }
+}
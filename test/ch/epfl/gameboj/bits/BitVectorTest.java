@@ -296,4 +296,22 @@ public class BitVectorTest {
         assertThrows(IndexOutOfBoundsException.class,
                 () -> bvb.setByte(10, 0));
     }
+    
+    @Test
+    public void operationsWorkAcrossLongsOnOddIntSize() {
+        BitVector v = new BitVector(96, false).not();
+        assertEquals(ONE_32 + ONE_32 + ONE_32, v.toString());
+        assertEquals(new BitVector(96, true), v);
+        assertEquals(new BitVector(96, true).hashCode(), v.hashCode());
+        
+        BitVector w = new BitVector(96, true).shift(-48);
+        assertEquals(ZERO_32 + "0000000000000000" + "1111111111111111" + ONE_32,
+                w.toString());
+        assertEquals("0000000000000000" + "1111111111111111",
+                w.extractWrapped(32, 32).toString());
+        assertEquals(ZERO_32, w.extractZeroExtended(80, 32).toString());
+        assertEquals("1111111111111111" + "0000000000000000",
+                w.extractWrapped(-16, 32).toString());
+        assertEquals(ONE_32, w.extractWrapped(-96, 32).toString());
+    }
 }
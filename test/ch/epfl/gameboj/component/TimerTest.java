@@ -158,4 +158,41 @@ public final class TimerTest implements ComponentTest {
             assertEquals(t.read(0xFF05), tma);
         }
     }
+
+    @Test
+    void nextEventCycleIsMaxValueWhenDisabled() {
+        Timer t = newComponent();
+        t.write(0xFF07, 0b011);
+        assertEquals(Long.MAX_VALUE, t.nextEventCycle(0));
+    }
+
+    @Test
+    void nextEventCycleIsCycleOfTimaOverflow() {
+        for (int tac = 0b100; tac <= 0b111; ++tac) {
+            Cpu cpu = new Cpu();
+            Timer t = new Timer(cpu);
+            t.write(0xFF07, tac);
+            t.write(0xFF05, 0xFD);
+            t.cycle(0);
+            long overflow = t.nextEventCycle(1);
+            for (long c = 1; c < overflow; ++c) {
+                t.cycle(c);
+                assertEquals(0, cpu.read(0xFF0F));
+            }
+            t.cycle(overflow);
+            assertEquals(1 << 2, cpu.read(0xFF0F));
+        }
+    }
+
+    @Test
+    void countersCatchUpWhenCyclesAreSkipped() {
+        Timer t1 = newComponent(), t2 = newComponent();
+        for (Timer t : new Timer[] { t1, t2 })
+            t.write(0xFF07, 0b101);
+        for (int c = 0; c <= 3000; ++c)
+            t1.cycle(c);
+        t2.cycle(3000);
+        assertEquals(t1.read(0xFF04), t2.read(0xFF04));
+        assertEquals(t1.read(0xFF05), t2.read(0xFF05));
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.memory.Rom;
+
+public final class CartridgeRomCacheTest {
+
+    private static File fileWithData(byte[] data) throws IOException {
+        File f = Files.createTempFile("TestROM_", ".gb").toFile();
+        f.deleteOnExit();
+        Files.write(f.toPath(), data);
+        return f;
+    }
+
+    @Test
+    void romOfFileHasContentOfFile() throws IOException {
+        byte[] data = new byte[0x8000];
+        newRandom().nextBytes(data);
+        Rom rom = Cartridge.romOfFile(fileWithData(data));
+
+        assertEquals(data.length, rom.size());
+        for (int i = 0; i < data.length; ++i)
+            assertEquals(Byte.toUnsignedInt(data[i]), rom.read(i));
+    }
+
+    @Test
+    void filesWithSameContentShareTheirRom() throws IOException {
+        Random rng = newRandom();
+        byte[] data = new byte[0x8000];
+        rng.nextBytes(data);
+        Rom r1 = Cartridge.romOfFile(fileWithData(data));
+        Rom r2 = Cartridge.romOfFile(fileWithData(data));
+        assertSame(r1, r2);
+
+        data[0x1234] ^= 1;
+        Rom r3 = Cartridge.romOfFile(fileWithData(data));
+        assertNotSame(r1, r3);
+        assertEquals(Byte.toUnsignedInt(data[0x1234]), r3.read(0x1234));
+    }
+
+    @Test
+    void changedFileGetsNewRom() throws IOException {
+        byte[] data = new byte[0x8000];
+        newRandom().nextBytes(data);
+        File f = fileWithData(data);
+        Rom r1 = Cartridge.romOfFile(f);
+        assertSame(r1, Cartridge.romOfFile(f));
+
+        data[0x4321] ^= 1;
+        Files.write(f.toPath(), data);
+        f.setLastModified(f.lastModified() + 2000);
+        Rom r2 = Cartridge.romOfFile(f);
+        assertNotSame(r1, r2);
+        assertEquals(Byte.toUnsignedInt(data[0x4321]), r2.read(0x4321));
+    }
+
+    @Test
+    void fileRebuiltWithSameTimeGetsNewRom() throws IOException {
+        byte[] data = new byte[0x8000];
+        newRandom().nextBytes(data);
+        File f = fileWithData(data);
+        long modified = f.lastModified();
+        Rom r1 = Cartridge.romOfFile(f);
+
+        // rebuilt as tools do, updating the global checksum of the header
+        data[0x4321] ^= 1;
+        int checksum = 0;
+        for (int i = 0; i < data.length; ++i) {
+            if (i != 0x14E && i != 0x14F)
+                checksum += Byte.toUnsignedInt(data[i]);
+        }
+        data[0x14E] = (byte) (checksum >> 8);
+        data[0x14F] = (byte) checksum;
+        Files.write(f.toPath(), data);
+        f.setLastModified(modified);
+
+        Rom r2 = Cartridge.romOfFile(f);
+        assertNotSame(r1, r2);
+        assertEquals(Byte.toUnsignedInt(data[0x4321]), r2.read(0x4321));
+    }
+}
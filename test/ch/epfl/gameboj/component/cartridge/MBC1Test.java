@@ -0,0 +1,117 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.memory.Rom;
+
+public final class MBC1Test {
+
+    private static final int ROM_SIZE = 0x80000, RAM_SIZE = 0x8000;
+
+    @Test
+    void readMapsBanksSelectedByRegisters() {
+        Random rng = newRandom();
+        byte[] romData = new byte[ROM_SIZE];
+        rng.nextBytes(romData);
+        MBC1 mbc = new MBC1(new Rom(romData), RAM_SIZE);
+
+        // rom bank 0x13, ram bank 2, mode 1
+        mbc.write(0x2000, 0x13);
+        mbc.write(0x4000, 0x02);
+        mbc.write(0x6000, 0x01);
+        int bank0 = 0x40 * 0x4000 % ROM_SIZE, bankX = 0x53 * 0x4000 % ROM_SIZE;
+        for (int a = 0; a < 0x4000; a += 0x111) {
+            assertEquals(Byte.toUnsignedInt(romData[bank0 + a]), mbc.read(a));
+            assertEquals(Byte.toUnsignedInt(romData[bankX + a]),
+                    mbc.read(0x4000 + a));
+        }
+
+        // rom bank 0 selects bank 1, mode 0 maps bank 0 at 0x0000
+        mbc.write(0x2000, 0x00);
+        mbc.write(0x6000, 0x00);
+        assertEquals(Byte.toUnsignedInt(romData[0x123]), mbc.read(0x123));
+        assertEquals(Byte.toUnsignedInt(romData[0x4000 + 0x123]),
+                mbc.read(0x4123));
+    }
+
+    @Test
+    void ramIsBankedAndOnlyAccessibleWhenEnabled() {
+        MBC1 mbc = new MBC1(new Rom(new byte[ROM_SIZE]), RAM_SIZE);
+        mbc.write(0xA000, 0x42);
+        assertEquals(0xFF, mbc.read(0xA000));
+
+        mbc.write(0x0000, 0x0A);
+        mbc.write(0x6000, 0x01);
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int bank = rng.nextInt(4), a = 0xA000 + rng.nextInt(0x2000);
+            int v = rng.nextInt(0x100);
+            mbc.write(0x4000, bank);
+            mbc.write(a, v);
+            assertEquals(v, mbc.read(a));
+            assertEquals(v, Byte.toUnsignedInt(
+                    mbc.save()[bank * 0x2000 + a - 0xA000]));
+        }
+
+        mbc.write(0x0000, 0x00);
+        assertEquals(0xFF, mbc.read(0xA000));
+    }
+
+    @Test
+    void loadReplacesRamContent() {
+        MBC1 mbc = new MBC1(new Rom(new byte[ROM_SIZE]), RAM_SIZE);
+        byte[] data = new byte[RAM_SIZE];
+        newRandom().nextBytes(data);
+        mbc.load(data);
+        assertArrayEquals(data, mbc.save());
+
+        mbc.write(0x0000, 0x0A);
+        assertEquals(Byte.toUnsignedInt(data[0x10]), mbc.read(0xA010));
+    }
+
+    @Test
+    void saveFileHoldsRamOnceFlushed() throws IOException {
+        File file = File.createTempFile("mbc1", ".sav");
+        file.deleteOnExit();
+        try {
+            MBC1 mbc = new MBC1(new Rom(new byte[ROM_SIZE]),
+                    SaveFile.open(file, RAM_SIZE));
+            assertEquals(RAM_SIZE, file.length());
+
+            mbc.write(0x0000, 0x0A);
+            mbc.write(0x6000, 0x01);
+            mbc.write(0x4000, 0x03);
+            mbc.write(0xA123, 0x42);
+            assertEquals(0, Files.readAllBytes(file.toPath())[0x6123]);
+            mbc.flush();
+            assertEquals(0x42, Files.readAllBytes(file.toPath())[0x6123]);
+
+            byte[] data = new byte[RAM_SIZE];
+            newRandom().nextBytes(data);
+            mbc.load(data);
+            mbc.flush();
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+
+            MBC1 reloaded = new MBC1(new Rom(new byte[ROM_SIZE]),
+                    SaveFile.open(file, RAM_SIZE));
+            assertArrayEquals(data, reloaded.save());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class CpuEngineTest {
+
+    private static final int ITERATIONS = 4;
+    private static final int MEMORY_SIZE = AddressMap.REGS_START;
+    private static final int STACK_START = 0xC000;
+
+    // LD SP,n16 ; POP AF ; POP BC ; POP DE ; POP HL ; LD SP,n16
+    private static final int SETUP_BYTES = 10;
+    private static final int SETUP_CYCLES = 3 + 4 * 3 + 3;
+
+    @Test
+    void constructorFailsOnNullEngine() {
+        assertThrows(NullPointerException.class, () -> new Cpu(null));
+    }
+
+    @Test
+    void enginesAgreeOnAllOpcodes() {
+        Random rng = newRandom();
+        for (Opcode o : Opcode.values()) {
+            if (o.family == Opcode.Family.STOP)
+                continue;
+            for (int i = 0; i < ITERATIONS; ++i) {
+                byte[] memory = randomMemory(rng, o);
+                Ram interpreted = new Ram(memory);
+                int[] expected = run(interpreted, o, Cpu.Engine.INTERPRETER);
+
+                for (Cpu.Engine e : Cpu.Engine.values()) {
+                    Ram ram = new Ram(memory);
+                    assertArrayEquals(expected, run(ram, o, e), o.name());
+                    assertArrayEquals(interpreted.getData(), ram.getData(),
+                            o.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    void enginesAgreeOnStop() {
+        for (Cpu.Engine e : Cpu.Engine.values()) {
+            byte[] memory = new byte[MEMORY_SIZE];
+            memory[0] = (byte) Opcode.STOP.encoding;
+            assertThrows(Error.class, () -> run(new Ram(memory), e, 1));
+        }
+    }
+
+    @Test
+    void romCacheSeesCodeWrittenInRomArea() {
+        // LD A,5 ; LD HL,0x0001 ; LD (HL),7 ; JP 0x0000
+        int[] program = { 0x3E, 0x05, 0x21, 0x01, 0x00, 0x36, 0x07, 0xC3,
+                0x00, 0x00 };
+        byte[] memory = new byte[MEMORY_SIZE];
+        for (int i = 0; i < program.length; ++i)
+            memory[i] = (byte) program[i];
+
+        int[] state = run(new Ram(memory), Cpu.Engine.ROM_CACHE,
+                2 + 3 + 3 + 4 + 2);
+        assertEquals(7, state[2]);
+    }
+
+    @Test
+    void stateSnapshotFillsGivenArray() {
+        Random rng = newRandom();
+        byte[] memory = randomMemory(rng, Opcode.NOP);
+        Bus bus = new Bus();
+        Cpu cpu = new Cpu();
+        new RamController(new Ram(memory), 0).attachTo(bus);
+        cpu.attachTo(bus);
+        for (int c = 0; c < SETUP_CYCLES; ++c)
+            cpu.cycle(c);
+
+        int[] state = new int[10];
+        assertSame(state, cpu._testGetPcSpAFBCDEHL(state));
+        assertArrayEquals(cpu._testGetPcSpAFBCDEHL(), state);
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> cpu._testGetPcSpAFBCDEHL(new int[9]));
+    }
+
+    private static byte[] randomMemory(Random rng, Opcode o) {
+        byte[] memory = new byte[MEMORY_SIZE];
+        rng.nextBytes(memory);
+
+        int sp = rng.nextInt(0x10000);
+        int[] setup = { 0x31, STACK_START & 0xFF, STACK_START >> 8, 0xF1,
+                0xC1, 0xD1, 0xE1, 0x31, sp & 0xFF, sp >> 8 };
+        for (int i = 0; i < SETUP_BYTES; ++i)
+            memory[i] = (byte) setup[i];
+
+        int opcodeAddress = SETUP_BYTES;
+        if (o.kind == Opcode.Kind.PREFIXED)
+            memory[opcodeAddress++] = (byte) 0xCB;
+        memory[opcodeAddress] = (byte) o.encoding;
+        return memory;
+    }
+
+    private static int[] run(Ram ram, Opcode o, Cpu.Engine engine) {
+        return run(ram, engine, SETUP_CYCLES + o.cycles);
+    }
+
+    private static int[] run(Ram ram, Cpu.Engine engine, int cycles) {
+        Bus bus = new Bus();
+        Cpu cpu = new Cpu(engine);
+        new RamController(ram, 0).attachTo(bus);
+        cpu.attachTo(bus);
+        for (int c = 0; c < cycles; ++c)
+            cpu.cycle(c);
+        return cpu._testGetPcSpAFBCDEHL();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.Scheduler;
+import ch.epfl.gameboj.component.Clocked;
+import ch.epfl.gameboj.component.Timer;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class CpuHaltTest {
+
+    // LD A,5 ; LDH (TAC),A ; LD A,4 ; LDH (IE),A ; XOR A ; LDH (IF),A
+    // halt: HALT ; INC B ; XOR A ; LDH (IF),A ; JR halt
+    private static final int[] PROGRAM = { 0x3E, 0x05, 0xE0, 0x07, 0x3E,
+            0x04, 0xE0, 0xFF, 0xAF, 0xE0, 0x0F, 0x76, 0x04, 0xAF, 0xE0, 0x0F,
+            0x18, 0xF9 };
+
+    private static final class Machine {
+        final Cpu cpu = new Cpu();
+        final Timer timer = new Timer(cpu);
+        int cpuCycles = 0;
+
+        Machine() {
+            Ram ram = new Ram(0x8000);
+            for (int i = 0; i < PROGRAM.length; ++i)
+                ram.write(i, PROGRAM[i]);
+            Bus bus = new Bus();
+            new RamController(ram, 0).attachTo(bus);
+            timer.attachTo(bus);
+            cpu.attachTo(bus);
+        }
+
+        void runScheduled(long until) {
+            Scheduler s = new Scheduler();
+            s.register(timer);
+            s.register(new Clocked() {
+                @Override
+                public void cycle(long cycle) {
+                    ++cpuCycles;
+                    cpu.cycle(cycle);
+                }
+
+                @Override
+                public long nextEventCycle(long cycle) {
+                    return cpu.nextEventCycle(cycle);
+                }
+            });
+            s.runUntil(0, until);
+        }
+
+        void runCycleByCycle(long until) {
+            for (long c = 0; c < until; ++c) {
+                timer.cycle(c);
+                cpu.cycle(c);
+            }
+        }
+    }
+
+    @Test
+    void haltedCpuIsOnlyClockedWhenWokenUp() {
+        Machine m = new Machine();
+        m.runScheduled(10_000);
+
+        int wakeUps = m.cpu._testGetPcSpAFBCDEHL()[4];
+        assertTrue(wakeUps > 0);
+        // 5 instructions per wake up, 7 to start, timer events and last cycle
+        assertTrue(m.cpuCycles < 10 * (wakeUps + 1));
+    }
+
+    @Test
+    void haltFastForwardIsExact() {
+        long[] stops = { 10, 11, 12, 100, 1_000, 5_000, 10_000 };
+        for (long stop : stops) {
+            Machine scheduled = new Machine(), stepped = new Machine();
+            scheduled.runScheduled(stop);
+            stepped.runCycleByCycle(stop);
+
+            assertArrayEquals(stepped.cpu._testGetPcSpAFBCDEHL(),
+                    scheduled.cpu._testGetPcSpAFBCDEHL(), "stop at " + stop);
+            assertEquals(stepped.cpu.isHalted(), scheduled.cpu.isHalted());
+        }
+    }
+
+    @Test
+    void cpuIsHaltedUntilInterruptIsRequested() {
+        Machine m = new Machine();
+        assertFalse(m.cpu.isHalted());
+        m.runCycleByCycle(15);
+        assertTrue(m.cpu.isHalted());
+
+        m.cpu.requestInterrupt(Cpu.Interrupt.TIMER);
+        m.cpu.cycle(15);
+        assertFalse(m.cpu.isHalted());
+    }
+}
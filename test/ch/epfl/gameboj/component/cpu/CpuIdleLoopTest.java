@@ -0,0 +1,141 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.Scheduler;
+import ch.epfl.gameboj.component.Clocked;
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class CpuIdleLoopTest {
+
+    private static final int FLAG_ADDRESS = 0xFF80 - 1;
+    private static final int RAM_SIZE = 0x8000;
+
+    // Register whose value changes to 1 at a given cycle, an event
+    private static final class FlagRegister implements Component, Clocked {
+        private final long setCycle;
+        private int value = 0;
+        private int reads = 0;
+
+        FlagRegister(long setCycle) {
+            this.setCycle = setCycle;
+        }
+
+        @Override
+        public int read(int address) {
+            if (address != FLAG_ADDRESS)
+                return NO_DATA;
+            ++reads;
+            return value;
+        }
+
+        @Override
+        public void write(int address, int data) {
+        }
+
+        @Override
+        public void cycle(long cycle) {
+            if (cycle == setCycle)
+                value = 1;
+        }
+
+        @Override
+        public long nextEventCycle(long cycle) {
+            return cycle <= setCycle ? setCycle : Long.MAX_VALUE;
+        }
+    }
+
+    // loop: LD A,(FLAG_ADDRESS) ; CP 1 ; JR NZ,loop
+    //       LD B,A ; INC C ; JR -3
+    private static final int[] POLLING_PROGRAM = { 0xFA,
+            FLAG_ADDRESS & 0xFF, FLAG_ADDRESS >> 8, 0xFE, 0x01, 0x20, 0xF9,
+            0x47, 0x0C, 0x18, 0xFD };
+
+    // loop: LD A,(FLAG_ADDRESS) ; LD (0xC000),A ; CP 1 ; JR NZ,loop
+    private static final int[] WRITING_PROGRAM = { 0xFA,
+            FLAG_ADDRESS & 0xFF, FLAG_ADDRESS >> 8, 0xEA, 0x00, 0xC0, 0xFE,
+            0x01, 0x20, 0xF6 };
+
+    @Test
+    void idleLoopSkippingIsExact() {
+        long[] stops = { 1, 7, 100, 9_999, 10_000, 10_001, 10_003, 10_050 };
+        for (long stop : stops) {
+            assertArrayEquals(runCycleByCycle(POLLING_PROGRAM, 10_000, stop),
+                    runScheduled(POLLING_PROGRAM, 10_000, stop).state,
+                    "stop at " + stop);
+        }
+    }
+
+    @Test
+    void idleLoopIsSkippedUntilNextEvent() {
+        Run r = runScheduled(POLLING_PROGRAM, 100_000, 100_100);
+        assertTrue(r.flag.reads < 100);
+        assertEquals(1, r.state[4]);
+    }
+
+    @Test
+    void loopsWritingToMemoryAreNotSkipped() {
+        Run r = runScheduled(WRITING_PROGRAM, 10_000, 9_000);
+        assertArrayEquals(runCycleByCycle(WRITING_PROGRAM, 10_000, 9_000),
+                r.state);
+        assertTrue(r.flag.reads > 100);
+    }
+
+    private static final class Run {
+        final int[] state;
+        final FlagRegister flag;
+
+        Run(int[] state, FlagRegister flag) {
+            this.state = state;
+            this.flag = flag;
+        }
+    }
+
+    private static Bus newBus(int[] program, Cpu cpu, FlagRegister flag) {
+        Ram ram = new Ram(RAM_SIZE);
+        for (int i = 0; i < program.length; ++i)
+            ram.write(i, program[i]);
+        Bus bus = new Bus();
+        new RamController(ram, 0).attachTo(bus);
+        flag.attachTo(bus);
+        cpu.attachTo(bus);
+        return bus;
+    }
+
+    private static Run runScheduled(int[] program, long setCycle, long until) {
+        Cpu cpu = new Cpu();
+        FlagRegister flag = new FlagRegister(setCycle);
+        newBus(program, cpu, flag);
+
+        Scheduler s = new Scheduler();
+        s.register(flag);
+        s.register(cpu);
+        s.runUntil(0, until);
+        return new Run(cpu._testGetPcSpAFBCDEHL(), flag);
+    }
+
+    private static int[] runCycleByCycle(int[] program, long setCycle,
+            long until) {
+        Cpu cpu = new Cpu();
+        FlagRegister flag = new FlagRegister(setCycle);
+        newBus(program, cpu, flag);
+
+        for (long c = 0; c < until; ++c) {
+            flag.cycle(c);
+            cpu.cycle(c);
+        }
+        return cpu._testGetPcSpAFBCDEHL();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+public final class LcdControllerDmaTest {
+
+    private static final int SOURCE_PAGE = 0xC1;
+
+    private static LcdController newController(Bus bus) {
+        Ram ram = new Ram(AddressMap.WORK_RAM_SIZE);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            ram.write(0x100 + i, i + 1);
+        bus.attach(new RamController(ram, AddressMap.WORK_RAM_START));
+        LcdController lcd = new LcdController(new Cpu());
+        lcd.attachTo(bus);
+        return lcd;
+    }
+
+    @Test
+    void oamReadDuringTransferSeesBytesCopiedSoFar() {
+        Bus bus = new Bus();
+        LcdController lcd = newController(bus);
+        lcd.cycle(100);
+        bus.write(AddressMap.REG_DMA, SOURCE_PAGE);
+
+        lcd.cycle(150);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            assertEquals(i < 50 ? i + 1 : 0,
+                    bus.read(AddressMap.OAM_START + i));
+
+        lcd.cycle(300);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            assertEquals(i + 1, bus.read(AddressMap.OAM_START + i));
+    }
+
+    @Test
+    void oamWriteDuringTransferIsOverwrittenOnlyIfNotCopiedYet() {
+        Bus bus = new Bus();
+        LcdController lcd = newController(bus);
+        lcd.cycle(100);
+        bus.write(AddressMap.REG_DMA, SOURCE_PAGE);
+
+        lcd.cycle(120);
+        bus.write(AddressMap.OAM_START + 10, 0xAA);
+        bus.write(AddressMap.OAM_START + 90, 0xBB);
+        assertEquals(0xBB, bus.read(AddressMap.OAM_START + 90));
+
+        lcd.cycle(300);
+        assertEquals(0xAA, bus.read(AddressMap.OAM_START + 10));
+        assertEquals(91, bus.read(AddressMap.OAM_START + 90));
+    }
+
+    @Test
+    void newTransferKeepsBytesCopiedByPreviousOne() {
+        Bus bus = new Bus();
+        LcdController lcd = newController(bus);
+        lcd.cycle(100);
+        bus.write(AddressMap.REG_DMA, SOURCE_PAGE);
+        lcd.cycle(130);
+        // the page before the source one only holds zeros
+        bus.write(AddressMap.REG_DMA, SOURCE_PAGE - 1);
+
+        lcd.cycle(150);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            assertEquals(20 <= i && i < 30 ? i + 1 : 0,
+                    bus.read(AddressMap.OAM_START + i));
+    }
+
+    @Test
+    void transferContinuesAfterStateIsLoaded() {
+        Bus bus = new Bus();
+        LcdController lcd = newController(bus);
+        lcd.cycle(100);
+        bus.write(AddressMap.REG_DMA, SOURCE_PAGE);
+        lcd.cycle(130);
+        bus.read(AddressMap.OAM_START);
+        ByteBuffer state = ByteBuffer.allocate(lcd.stateSize());
+        lcd.saveState(state);
+
+        Bus otherBus = new Bus();
+        LcdController other = newController(otherBus);
+        other.loadState(state.flip());
+        other.cycle(140);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            assertEquals(i < 40 ? i + 1 : 0,
+                    otherBus.read(AddressMap.OAM_START + i));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+public final class LcdControllerFrameSkipTest {
+
+    private static final File ROM = new File("roms/SuperMarioLand.gb");
+    private static final long FRAME_CYCLES = 17556, STEP = 1000;
+
+    private static GameBoy newGameBoy() throws IOException {
+        return new GameBoy(Cartridge.ofFile(ROM));
+    }
+
+    @Test
+    void setFrameSkipFailsOnNegativeSkip() throws IOException {
+        LcdController lcd = newGameBoy().lcdController();
+        assertThrows(IllegalArgumentException.class,
+                () -> lcd.setFrameSkip(-1));
+    }
+
+    @Test
+    void skippedFramesDontChangeEmulation() throws IOException {
+        GameBoy reference = newGameBoy(), skipping = newGameBoy();
+        skipping.lcdController().setFrameSkip(3);
+
+        LcdImage shown = skipping.lcdController().currentImage();
+        LcdImage referenceShown = reference.lcdController().currentImage();
+        int rendered = 0, frames = 0;
+        for (long c = STEP; c <= 200 * FRAME_CYCLES; c += STEP) {
+            reference.runUntil(c);
+            skipping.runUntil(c);
+            if (reference.lcdController().currentImage() != referenceShown) {
+                referenceShown = reference.lcdController().currentImage();
+                ++frames;
+            }
+            LcdImage image = skipping.lcdController().currentImage();
+            if (image != shown) {
+                assertEquals(reference.lcdController().currentImage(), image);
+                shown = image;
+                ++rendered;
+            }
+        }
+        // one frame out of 4 is rendered
+        assertEquals(frames / 4.0, rendered, 1);
+        assertArrayEquals(reference.saveState(), skipping.saveState());
+    }
+
+    @Test
+    void onlyRequestedFramesAreRendered() throws IOException {
+        GameBoy reference = newGameBoy(), skipping = newGameBoy();
+        LcdController lcd = skipping.lcdController();
+        lcd.setFrameSkip(Integer.MAX_VALUE);
+
+        reference.runUntil(100 * FRAME_CYCLES);
+        skipping.runUntil(100 * FRAME_CYCLES);
+        LcdImage first = lcd.currentImage();
+        skipping.runUntil(102 * FRAME_CYCLES);
+        assertSame(first, lcd.currentImage());
+
+        lcd.requestFrame();
+        for (long c = 102 * FRAME_CYCLES; lcd.currentImage() == first; c += STEP)
+            skipping.runUntil(c);
+        reference.runUntil(skipping.cycles());
+        assertEquals(reference.lcdController().currentImage(),
+                lcd.currentImage());
+    }
+}
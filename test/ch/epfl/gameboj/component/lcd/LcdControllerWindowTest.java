@@ -0,0 +1,51 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+public final class LcdControllerWindowTest {
+
+    private static final int LINE_CYCLES = 114;
+    private static final int REG_BGP = 0xFF47, REG_WY = 0xFF4A, REG_WX = 0xFF4B;
+    // lcd on, window from area 0x9C00, tiles from 0x8000, background off
+    private static final int LCDC_ON = 0xF0, LCDC_OFF = 0x70;
+
+    @Test
+    void windowPastItsAreaUsesTileOfNoData() {
+        Bus bus = new Bus();
+        LcdController lcd = new LcdController(new Cpu());
+        lcd.attachTo(bus);
+        bus.write(REG_BGP, 0b11_10_01_00);
+        bus.write(REG_WY, 0);
+        bus.write(REG_WX, 7);
+        // tile 0x100, read for the lines past the area, is the black one
+        for (int i = 0; i < 16; ++i)
+            bus.write(0x9000 + i, 0xFF);
+
+        // the window line isn't reset when the lcd is switched off and on
+        // before the frame ends, and goes past 255 in the next frame
+        long c = 0;
+        bus.write(AddressMap.REG_LCDC, LCDC_ON);
+        for (; c < 140 * LINE_CYCLES; ++c)
+            lcd.cycle(c);
+        bus.write(AddressMap.REG_LCDC, LCDC_OFF);
+        bus.write(AddressMap.REG_LCDC, LCDC_ON);
+        for (; c < 300 * LINE_CYCLES; ++c)
+            lcd.cycle(c);
+
+        LcdImage image = lcd.currentImage();
+        assertEquals(0, image.get(0, 100));
+        for (int x = 0; x < LcdController.LCD_WIDTH; ++x)
+            assertEquals(3, image.get(x, LcdController.LCD_HEIGHT - 1));
+    }
+}
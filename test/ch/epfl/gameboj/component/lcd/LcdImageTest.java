@@ -5,6 +5,7 @@
 
 package ch.epfl.gameboj.component.lcd;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -12,11 +13,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import ch.epfl.gameboj.bits.BitVector;
+import ch.epfl.test.TestRandomizer;
 
 public class LcdImageTest {
     
@@ -228,4 +231,73 @@ public class LcdImageTest {
         
         assertTrue(image64.hashCode() == otherButSame.hashCode());
     }
+
+    /* ------------ copyInto tests ------------- */
+    @Test
+    public void copyIntoMapsPixelColorsThroughPalette() {
+        Random rng = TestRandomizer.newRandom();
+        int width = 96, height = 5;
+        LcdImage.Builder b = new LcdImage.Builder(width, height);
+        for (int y = 0; y < height; ++y) {
+            BitVector.Builder[] vs = { new BitVector.Builder(width),
+                    new BitVector.Builder(width), new BitVector.Builder(width) };
+            for (BitVector.Builder v : vs)
+                for (int i = 0; i < width / Byte.SIZE; ++i)
+                    v.setByte(i, rng.nextInt(0x100));
+            b.setLine(y, new LcdImageLine(vs[0].build(), vs[1].build(),
+                    vs[2].build()));
+        }
+        LcdImage image = b.build();
+
+        int[] palette = { 0xFF000011, 0xFF002200, 0xFF330000, 0xFF444444 };
+        int[] colors = new int[width * height];
+        image.copyInto(colors, palette);
+        for (int y = 0; y < height; ++y)
+            for (int x = 0; x < width; ++x)
+                assertEquals(palette[image.get(x, y)], colors[y * width + x]);
+
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> image.copyInto(new int[width * height - 1], palette));
+        assertThrows(IllegalArgumentException.class,
+                () -> image.copyInto(colors, new int[3]));
+    }
+
+    @Test
+    public void copyLineIntoWritesColorsOfOneLine() {
+        BitVector msb = new BitVector.Builder(64).setByte(0, 0b0000_0110)
+                .setByte(7, 0b1000_0000).build();
+        BitVector lsb = new BitVector.Builder(64).setByte(0, 0b0000_0011)
+                .build();
+        LcdImageLine line = new LcdImageLine(msb, lsb, msb.or(lsb));
+        LcdImage image = new LcdImage.Builder(64, 3).setLine(1, line).build();
+
+        int[] palette = { 10, 11, 12, 13 };
+        int[] colors = new int[66];
+        image.copyLineInto(1, colors, 2, palette);
+        int[] expected = new int[66];
+        for (int x = 0; x < 64; ++x)
+            expected[x + 2] = palette[line.pixelColor(x)];
+        assertArrayEquals(expected, colors);
+        assertEquals(11, colors[2]);
+        assertEquals(13, colors[3]);
+        assertEquals(12, colors[4]);
+        assertEquals(12, colors[65]);
+
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> image.copyLineInto(3, colors, 0, palette));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> image.copyLineInto(0, colors, 3, palette));
+    }
+
+    @Test
+    public void imagesWithSamePixelColorsAreEqual() {
+        BitVector ones = new BitVector(32, true), zeros = new BitVector(32);
+        // transparent pixels have color 0, whatever their msb and lsb
+        LcdImage hidden = new LcdImage(new ArrayList<>(List.of(
+                new LcdImageLine(ones, ones, zeros))));
+        LcdImage blank = new LcdImage.Builder(32, 1).build();
+        assertEquals(0, hidden.get(5, 0));
+        assertEquals(blank, hidden);
+        assertEquals(blank.hashCode(), hidden.hashCode());
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.bits.BitVector;
+
+public final class ScratchLineTest {
+
+    private static final int SIZE = 160;
+
+    private static LcdImageLine randomLine(Random rng, int size) {
+        BitVector.Builder m = new BitVector.Builder(size);
+        BitVector.Builder l = new BitVector.Builder(size);
+        BitVector.Builder o = new BitVector.Builder(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i) {
+            m.setByte(i, rng.nextInt(256));
+            l.setByte(i, rng.nextInt(256));
+            o.setByte(i, rng.nextInt(256));
+        }
+        return new LcdImageLine(m.build(), l.build(), o.build());
+    }
+
+    private static ScratchLine scratch(LcdImageLine line) {
+        ScratchLine s = new ScratchLine(line.size());
+        s.set(line);
+        return s;
+    }
+
+    @Test
+    void constructorFailsOnInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ScratchLine(0));
+        assertThrows(IllegalArgumentException.class, () -> new ScratchLine(48));
+    }
+
+    @Test
+    void setBytesWorksLikeBuilder() {
+        ScratchLine s = new ScratchLine(SIZE);
+        s.setBytes(3, 0b1100_1010, 0b0101_0011);
+        LcdImageLine expected = new LcdImageLine.Builder(SIZE)
+                .setBytes(3, 0b1100_1010, 0b0101_0011).build();
+        assertEquals(expected, s.toLine());
+    }
+
+    @Test
+    void operationsWorkLikeImmutableOnes() {
+        Random rng = new Random(2018);
+        for (int i = 0; i < 200; ++i) {
+            LcdImageLine a = randomLine(rng, SIZE), b = randomLine(rng, SIZE);
+            ScratchLine dst = new ScratchLine(SIZE);
+
+            int delta = rng.nextInt(2 * SIZE + 1) - SIZE;
+            scratch(a).shiftInto(delta, dst);
+            assertEquals(a.shift(delta), dst.toLine());
+
+            int palette = rng.nextInt(256);
+            scratch(a).mapColorsInto(palette, dst);
+            assertEquals(a.mapColors(palette), dst.toLine());
+
+            scratch(a).belowInto(scratch(b), dst);
+            assertEquals(a.below(b), dst.toLine());
+
+            int from = rng.nextInt(SIZE + 1);
+            scratch(a).joinInto(scratch(b), from, dst);
+            assertEquals(a.join(b, from), dst.toLine());
+
+            LcdImageLine area = randomLine(rng, 256);
+            int index = rng.nextInt(1024) - 512;
+            dst.extractWrappedFrom(scratch(area), index);
+            assertEquals(area.extractWrapped(index, SIZE), dst.toLine());
+        }
+    }
+
+    @Test
+    void operationsWorkInPlace() {
+        Random rng = new Random(288519);
+        for (int i = 0; i < 200; ++i) {
+            LcdImageLine a = randomLine(rng, SIZE), b = randomLine(rng, SIZE);
+
+            int delta = rng.nextInt(2 * SIZE + 1) - SIZE;
+            ScratchLine s = scratch(a);
+            s.shiftInto(delta, s);
+            assertEquals(a.shift(delta), s.toLine());
+
+            int palette = rng.nextInt(256);
+            s = scratch(a);
+            s.mapColorsInto(palette, s);
+            assertEquals(a.mapColors(palette), s.toLine());
+
+            ScratchLine top = scratch(b);
+            scratch(a).belowInto(top, top);
+            assertEquals(a.below(b), top.toLine());
+
+            int from = rng.nextInt(SIZE + 1);
+            s = scratch(a);
+            s.joinInto(scratch(b), from, s);
+            assertEquals(a.join(b, from), s.toLine());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.memory.Ram;
+
+public final class SpriteIndexTest {
+
+    private static void setSprite(Ram oam, SpriteIndex index, int sprite,
+            int y, int x) {
+        oam.write(4 * sprite, y);
+        index.update(4 * sprite);
+        oam.write(4 * sprite + 1, x);
+        index.update(4 * sprite + 1);
+    }
+
+    @Test
+    void linesHoldFirstTenSpritesSortedByX() {
+        Ram oam = new Ram(AddressMap.OAM_RAM_SIZE);
+        SpriteIndex index = new SpriteIndex(oam, 144);
+        // 12 sprites on lines 0 to 7, with decreasing x
+        for (int s = 0; s < 12; ++s)
+            setSprite(oam, index, s, 16, 100 - s);
+
+        assertEquals(10, index.count(0, false));
+        for (int i = 0; i < 10; ++i)
+            assertEquals(9 - i, index.sprite(0, i));
+        assertEquals(10, index.count(7, false));
+        assertEquals(0, index.count(8, false));
+        assertEquals(10, index.count(15, true));
+    }
+
+    @Test
+    void spritesWithSameXAreSortedByIndex() {
+        Ram oam = new Ram(AddressMap.OAM_RAM_SIZE);
+        SpriteIndex index = new SpriteIndex(oam, 144);
+        setSprite(oam, index, 39, 150, 8);
+        setSprite(oam, index, 3, 151, 8);
+
+        assertEquals(1, index.count(134, false));
+        assertEquals(2, index.count(135, false));
+        assertEquals(3, index.sprite(135, 0));
+        assertEquals(39, index.sprite(135, 1));
+        assertEquals(2, index.count(141, false));
+        assertEquals(1, index.count(142, false));
+    }
+
+    @Test
+    void indexFollowsWritesOfCoordinates() {
+        Ram oam = new Ram(AddressMap.OAM_RAM_SIZE);
+        SpriteIndex index = new SpriteIndex(oam, 144);
+        setSprite(oam, index, 5, 20, 8);
+        assertEquals(1, index.count(4, false));
+
+        setSprite(oam, index, 5, 40, 8);
+        assertEquals(0, index.count(4, false));
+        assertEquals(1, index.count(24, false));
+
+        oam.write(4 * 5, 100);
+        index.invalidate();
+        assertEquals(0, index.count(24, false));
+        assertEquals(1, index.count(84, false));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *  @Author : Paul Juillard (288519)
+ *  @Author : Leo Tafti (285418)
+*/
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.memory.Ram;
+
+public final class TileCacheTest {
+
+    @Test
+    void rowsAreDecodedOnceWritten() {
+        Ram vRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+        TileCache tiles = new TileCache(vRam);
+
+        vRam.write(0x1232, 0b1100_0001);
+        tiles.update(0x1232);
+        assertEquals(0b1000_0011, tiles.lsb(0x1232));
+        assertEquals(0, tiles.msb(0x1232));
+
+        vRam.write(0x1233, 0b0000_0110);
+        tiles.update(0x1233);
+        assertEquals(0b1000_0011, tiles.lsb(0x1232));
+        assertEquals(0b0110_0000, tiles.msb(0x1232));
+    }
+
+    @Test
+    void rowsAreStaleUntilUpdatedOrReloaded() {
+        Ram vRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+        TileCache tiles = new TileCache(vRam);
+
+        vRam.write(TileCache.TILE_DATA_SIZE - 1, 0xF0);
+        vRam.write(TileCache.TILE_DATA_SIZE, 0xFF);
+        tiles.update(TileCache.TILE_DATA_SIZE);
+        assertEquals(0, tiles.msb(TileCache.TILE_DATA_SIZE - 2));
+
+        tiles.reload();
+        assertEquals(0x0F, tiles.msb(TileCache.TILE_DATA_SIZE - 2));
+    }
+}